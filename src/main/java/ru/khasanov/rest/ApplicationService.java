@@ -1,7 +1,11 @@
 package ru.khasanov.rest;
 
 import ru.khasanov.rest.manage.AccountManager;
+import ru.khasanov.rest.manage.HistoryCompactor;
+import ru.khasanov.rest.manage.LedgerReconciler;
+import ru.khasanov.rest.manage.RateLimiter;
 import ru.khasanov.rest.manage.TransactionManager;
+import ru.khasanov.rest.provider.ResponseCache;
 
 /**
  * Application helper service.
@@ -16,6 +20,16 @@ public class ApplicationService {
 
     private TransactionManager transactionManager;
 
+    private ResponseCache historyCache = new ResponseCache();
+
+    private RateLimiter accountRateLimiter;
+
+    private RateLimiter clientRateLimiter;
+
+    private LedgerReconciler ledgerReconciler;
+
+    private HistoryCompactor historyCompactor;
+
     private ApplicationService() {
     }
 
@@ -46,6 +60,46 @@ public class ApplicationService {
         this.transactionManager = transactionManager;
     }
 
+    /**
+     * Init cache of serialized transactions of closed time periods.
+     *
+     * @param historyCache {@link ResponseCache}. Must not be {@code null}
+     */
+    public void initHistoryCache(ResponseCache historyCache) {
+        this.historyCache = historyCache;
+    }
+
+    /**
+     * Init rate limits of transfers from the same account and transfers requested by the same client.
+     *
+     * @param accountRateLimiter {@link RateLimiter} keyed by transmitter id. In case of {@code null} value
+     *                           accounts are not limited
+     * @param clientRateLimiter  {@link RateLimiter} keyed by client. In case of {@code null} value
+     *                           clients are not limited
+     */
+    public void initRateLimiters(RateLimiter accountRateLimiter, RateLimiter clientRateLimiter) {
+        this.accountRateLimiter = accountRateLimiter;
+        this.clientRateLimiter = clientRateLimiter;
+    }
+
+    /**
+     * Init reconciler of account balances with the ledger.
+     *
+     * @param ledgerReconciler {@link LedgerReconciler}. Must not be {@code null}
+     */
+    public void initLedgerReconciler(LedgerReconciler ledgerReconciler) {
+        this.ledgerReconciler = ledgerReconciler;
+    }
+
+    /**
+     * Init compactor of history of deleted accounts.
+     *
+     * @param historyCompactor {@link HistoryCompactor}. Must not be {@code null}
+     */
+    public void initHistoryCompactor(HistoryCompactor historyCompactor) {
+        this.historyCompactor = historyCompactor;
+    }
+
     /**
      * Get account manager.
      *
@@ -63,4 +117,49 @@ public class ApplicationService {
     public TransactionManager getTransactionManager() {
         return transactionManager;
     }
+
+    /**
+     * Get cache of serialized transactions of closed time periods.
+     *
+     * @return instance of {@link ResponseCache}
+     */
+    public ResponseCache getHistoryCache() {
+        return historyCache;
+    }
+
+    /**
+     * Get rate limiter of transfers from the same account.
+     *
+     * @return instance of {@link RateLimiter}. {@code null} if accounts are not limited
+     */
+    public RateLimiter getAccountRateLimiter() {
+        return accountRateLimiter;
+    }
+
+    /**
+     * Get rate limiter of transfers requested by the same client.
+     *
+     * @return instance of {@link RateLimiter}. {@code null} if clients are not limited
+     */
+    public RateLimiter getClientRateLimiter() {
+        return clientRateLimiter;
+    }
+
+    /**
+     * Get reconciler of account balances with the ledger.
+     *
+     * @return instance of {@link LedgerReconciler}
+     */
+    public LedgerReconciler getLedgerReconciler() {
+        return ledgerReconciler;
+    }
+
+    /**
+     * Get compactor of history of deleted accounts.
+     *
+     * @return instance of {@link HistoryCompactor}. {@code null} if history is not compacted
+     */
+    public HistoryCompactor getHistoryCompactor() {
+        return historyCompactor;
+    }
 }
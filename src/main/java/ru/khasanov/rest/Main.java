@@ -1,17 +1,41 @@
 package ru.khasanov.rest;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.grizzly.IOStrategy;
+import org.glassfish.grizzly.http.KeepAlive;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.strategies.LeaderFollowerNIOStrategy;
+import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
+import org.glassfish.grizzly.strategies.SimpleDynamicNIOStrategy;
+import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import ru.khasanov.rest.config.ServiceConfiguration;
 import ru.khasanov.rest.manage.AccountManager;
+import ru.khasanov.rest.manage.HistoryCompactor;
+import ru.khasanov.rest.manage.IdempotencyCache;
+import ru.khasanov.rest.manage.LedgerReconciler;
+import ru.khasanov.rest.manage.RateLimiter;
 import ru.khasanov.rest.manage.TransactionManager;
+import ru.khasanov.rest.provider.ResponseCache;
+import ru.khasanov.rest.provider.CompressionInterceptor;
+import ru.khasanov.rest.provider.PreSerializedJsonWriter;
 import ru.khasanov.rest.storage.AccountStorage;
 import ru.khasanov.rest.storage.TransactionStorage;
 
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.UriBuilder;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main application class.
@@ -19,22 +43,92 @@ import java.util.concurrent.Executors;
  * @author Aleksandr Khasanov
  */
 public class Main {
-    // Base URI the Grizzly HTTP server will listen on
+    // Base URI the Grizzly HTTP server will listen on if not configured otherwise
     public static final String BASE_URI = "http://localhost:8080/rest/";
 
+    private static final int DEFAULT_TIMEOUT = 1000;
+
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+
+    private static final long DEFAULT_COMPRESSION_CACHE_SIZE = 16 * 1024 * 1024;
+
+    private static final long DEFAULT_HISTORY_CACHE_SIZE = 64 * 1024 * 1024;
+
+    private static final int DEFAULT_ACCOUNT_BURST = 10;
+
+    private static final int DEFAULT_CLIENT_BURST = 100;
+
+    private static final long DEFAULT_COMPACTION_INTERVAL = 60 * 1000;
+
+    private static Logger logger = LogManager.getLogger(Main.class);
+
     /**
      * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application.
+     * Server is configured with {@link ServiceConfiguration#load()}.
      *
      * @return Grizzly HTTP server.
      */
     public static HttpServer startServer() {
+        return startServer(ServiceConfiguration.load());
+    }
+
+    /**
+     * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application.
+     *
+     * @param configuration service configuration. Must not be {@code null}
+     * @return Grizzly HTTP server.
+     */
+    public static HttpServer startServer(ServiceConfiguration configuration) {
         // create a resource config that scans for JAX-RS resources and providers
         // in ru.khasanov.rest package
         final ResourceConfig rc = new ResourceConfig().packages("ru.khasanov.rest");
 
-        // create and start a new instance of grizzly http server
-        // exposing the Jersey application at BASE_URI
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), rc);
+        // compress responses, keeping compressed bodies of cacheable responses
+        CompressionInterceptor compressionInterceptor = new CompressionInterceptor(new ResponseCache(
+                configuration.getLong(ServiceConfiguration.COMPRESSION_CACHE_SIZE, DEFAULT_COMPRESSION_CACHE_SIZE)));
+        compressionInterceptor.setEncodings(configuration.getList(ServiceConfiguration.COMPRESSION_ENCODINGS,
+                Arrays.asList(CompressionInterceptor.GZIP, CompressionInterceptor.DEFLATE)));
+        compressionInterceptor.setMinSize(
+                configuration.getInt(ServiceConfiguration.COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE));
+        rc.register(compressionInterceptor);
+
+        // write transactions from JSON encodings kept on them
+        if (configuration.getBoolean(ServiceConfiguration.JSON_PRE_SERIALIZED, false)) {
+            rc.register(PreSerializedJsonWriter.class);
+        }
+
+        // create a new instance of grizzly http server
+        // exposing the Jersey application at configured base URI
+        final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(getBaseUri(configuration), rc, false);
+
+        for (NetworkListener listener : server.getListeners()) {
+            configureListener(listener, configuration);
+        }
+
+        try {
+            server.start();
+        } catch (IOException e) {
+            server.shutdownNow();
+            throw new ProcessingException("Failed to start server", e);
+        }
+
+        return server;
+    }
+
+    /**
+     * Get base URI the server listens on.
+     *
+     * @param configuration service configuration. Must not be {@code null}
+     * @return base URI
+     */
+    public static URI getBaseUri(ServiceConfiguration configuration) {
+        URI defaultUri = URI.create(BASE_URI);
+
+        return UriBuilder.fromUri(defaultUri)
+                .host(configuration.getString(ServiceConfiguration.SERVER_HOST, defaultUri.getHost()))
+                .port(configuration.getInt(ServiceConfiguration.SERVER_PORT, defaultUri.getPort()))
+                .replacePath(configuration.getString(ServiceConfiguration.SERVER_PATH, defaultUri.getPath()))
+                .build();
     }
 
     /**
@@ -44,12 +138,14 @@ public class Main {
      */
     public static void main(String[] args) {
 
-        initApplicationService();
+        ServiceConfiguration configuration = ServiceConfiguration.load();
+
+        initApplicationService(configuration);
 
-        final HttpServer server = startServer();
+        final HttpServer server = startServer(configuration);
 
         System.out.println(String.format("Jersey app started with WADL available at "
-                + "%sapplication.wadl\nHit enter to stop it...", BASE_URI));
+                + "%sapplication.wadl\nHit enter to stop it...", getBaseUri(configuration)));
 
         try {
             System.in.read();
@@ -62,19 +158,152 @@ public class Main {
 
     /**
      * Init helper service.
+     * Service is configured with {@link ServiceConfiguration#load()}.
      */
     public static void initApplicationService() {
+        initApplicationService(ServiceConfiguration.load());
+    }
+
+    /**
+     * Init helper service.
+     *
+     * @param configuration service configuration. Must not be {@code null}
+     */
+    public static void initApplicationService(ServiceConfiguration configuration) {
         ExecutorService executorService = Executors.newSingleThreadExecutor();
 
         AccountStorage accountStorage = new AccountStorage();
         AccountManager accountManager = new AccountManager(accountStorage, executorService);
-        accountManager.setTimeout(1000);
+        accountManager.setTimeout(configuration.getInt(ServiceConfiguration.ACCOUNTS_TIMEOUT, DEFAULT_TIMEOUT));
         ApplicationService.getInstance().initAccountManager(accountManager);
 
         TransactionStorage transactionStorage = new TransactionStorage();
+        accountStorage.setTransactionLog(transactionStorage.getTransactionLog());
         TransactionManager transactionManager = new TransactionManager(transactionStorage, accountStorage, executorService);
-        transactionManager.setTimeout(1000);
+        transactionManager.setTimeout(configuration.getInt(ServiceConfiguration.TRANSACTIONS_TIMEOUT, DEFAULT_TIMEOUT));
+        ForkJoinPool scanPool = createScanPool(configuration);
+        transactionManager.setScanPool(scanPool);
+        transactionManager.setParallelScanThreshold(configuration.getInt(
+                ServiceConfiguration.TRANSACTIONS_PARALLEL_SCAN_THRESHOLD, transactionManager.getParallelScanThreshold()));
+        transactionManager.setMaxHoldTimeToLive(configuration.getLong(
+                ServiceConfiguration.HOLDS_MAX_TIME_TO_LIVE, transactionManager.getMaxHoldTimeToLive()));
+        transactionManager.getTransactionFeed().setBufferSize(configuration.getInt(
+                ServiceConfiguration.FEED_BUFFER_SIZE, transactionManager.getTransactionFeed().getBufferSize()));
+        IdempotencyCache idempotencyCache = transactionManager.getIdempotencyCache();
+        idempotencyCache.setMaxSize(configuration.getInt(
+                ServiceConfiguration.IDEMPOTENCY_MAX_KEYS, idempotencyCache.getMaxSize()));
+        idempotencyCache.setTimeToLive(configuration.getLong(
+                ServiceConfiguration.IDEMPOTENCY_TIME_TO_LIVE, idempotencyCache.getTimeToLive()));
         ApplicationService.getInstance().initTransactionManager(transactionManager);
+
+        ApplicationService.getInstance().initHistoryCache(new ResponseCache(
+                configuration.getLong(ServiceConfiguration.HISTORY_CACHE_SIZE, DEFAULT_HISTORY_CACHE_SIZE)));
+
+        ApplicationService.getInstance().initRateLimiters(
+                createRateLimiter(configuration, ServiceConfiguration.RATE_LIMIT_ACCOUNT_RATE,
+                        ServiceConfiguration.RATE_LIMIT_ACCOUNT_BURST, DEFAULT_ACCOUNT_BURST),
+                createRateLimiter(configuration, ServiceConfiguration.RATE_LIMIT_CLIENT_RATE,
+                        ServiceConfiguration.RATE_LIMIT_CLIENT_BURST, DEFAULT_CLIENT_BURST));
+
+        LedgerReconciler ledgerReconciler = new LedgerReconciler(
+                transactionStorage, accountStorage, executorService, scanPool != null ? scanPool : ForkJoinPool.commonPool());
+        ledgerReconciler.setTimeout(configuration.getInt(ServiceConfiguration.TRANSACTIONS_TIMEOUT, DEFAULT_TIMEOUT));
+        long reconciliationInterval = configuration.getLong(ServiceConfiguration.RECONCILIATION_INTERVAL, 0);
+        if (reconciliationInterval > 0) {
+            ledgerReconciler.schedule(reconciliationInterval);
+        }
+        ApplicationService.getInstance().initLedgerReconciler(ledgerReconciler);
+
+        HistoryCompactor historyCompactor = new HistoryCompactor(transactionStorage, accountStorage, executorService);
+        historyCompactor.setTimeout(configuration.getInt(ServiceConfiguration.TRANSACTIONS_TIMEOUT, DEFAULT_TIMEOUT));
+        historyCompactor.setRetention(configuration.getLong(
+                ServiceConfiguration.COMPACTION_RETENTION, historyCompactor.getRetention()));
+        historyCompactor.setBatchSize(configuration.getInt(
+                ServiceConfiguration.COMPACTION_BATCH_SIZE, historyCompactor.getBatchSize()));
+        String archiveDirectory = configuration.getString(ServiceConfiguration.COMPACTION_ARCHIVE_DIRECTORY, null);
+        if (archiveDirectory != null && !archiveDirectory.isEmpty()) {
+            historyCompactor.setArchiveDirectory(Paths.get(archiveDirectory));
+        }
+        // bodies cached before compaction are keyed by previous epoch and are never read again
+        historyCompactor.setCompactionListener(() -> ApplicationService.getInstance().getHistoryCache().clear());
+        long compactionInterval = configuration.getLong(ServiceConfiguration.COMPACTION_INTERVAL, DEFAULT_COMPACTION_INTERVAL);
+        if (compactionInterval > 0) {
+            historyCompactor.schedule(compactionInterval);
+        }
+        ApplicationService.getInstance().initHistoryCompactor(historyCompactor);
+    }
+
+    private static ForkJoinPool createScanPool(ServiceConfiguration configuration) {
+        int parallelism = configuration.getInt(ServiceConfiguration.TRANSACTIONS_SCAN_PARALLELISM,
+                Runtime.getRuntime().availableProcessors());
+        return parallelism > 0 ? new ForkJoinPool(parallelism) : null;
     }
-}
 
+    private static RateLimiter createRateLimiter(ServiceConfiguration configuration, String rateKey, String burstKey,
+                                                 int defaultBurst) {
+        int rate = configuration.getInt(rateKey, 0);
+        int burst = configuration.getInt(burstKey, defaultBurst);
+        if (rate <= 0) {
+            return null;
+        }
+        if (burst <= 0) {
+            logger.warn("Invalid value of {}: {}. Using default value {}", burstKey, burst, defaultBurst);
+            burst = defaultBurst;
+        }
+        return new RateLimiter(rate, burst);
+    }
+
+    private static void configureListener(NetworkListener listener, ServiceConfiguration configuration) {
+        TCPNIOTransport transport = listener.getTransport();
+
+        int selectorRunners = configuration.getInt(ServiceConfiguration.TRANSPORT_SELECTOR_RUNNERS, 0);
+        if (selectorRunners > 0) {
+            transport.setSelectorRunnersCount(selectorRunners);
+        }
+
+        ThreadPoolConfig workerConfig = transport.getWorkerThreadPoolConfig() != null
+                ? transport.getWorkerThreadPoolConfig().copy() : ThreadPoolConfig.defaultConfig();
+
+        int corePoolSize = configuration.getInt(
+                ServiceConfiguration.TRANSPORT_WORKER_CORE_POOL_SIZE, workerConfig.getCorePoolSize());
+        int maxPoolSize = configuration.getInt(
+                ServiceConfiguration.TRANSPORT_WORKER_MAX_POOL_SIZE, workerConfig.getMaxPoolSize());
+
+        transport.setWorkerThreadPoolConfig(workerConfig
+                .setCorePoolSize(corePoolSize)
+                .setMaxPoolSize(Math.max(corePoolSize, maxPoolSize))
+                .setQueueLimit(configuration.getInt(
+                        ServiceConfiguration.TRANSPORT_WORKER_QUEUE_LIMIT, workerConfig.getQueueLimit())));
+
+        String ioStrategyName = configuration.getString(ServiceConfiguration.TRANSPORT_IO_STRATEGY, null);
+        if (ioStrategyName != null) {
+            IOStrategy ioStrategy = getIOStrategy(ioStrategyName);
+            if (ioStrategy != null) {
+                transport.setIOStrategy(ioStrategy);
+            } else {
+                logger.warn("Unknown I/O strategy: {}. Using default strategy", ioStrategyName);
+            }
+        }
+
+        KeepAlive keepAlive = listener.getKeepAlive();
+        keepAlive.setMaxRequestsCount(configuration.getInt(
+                ServiceConfiguration.TRANSPORT_KEEP_ALIVE_MAX_REQUESTS, keepAlive.getMaxRequestsCount()));
+        keepAlive.setIdleTimeoutInSeconds(configuration.getInt(
+                ServiceConfiguration.TRANSPORT_KEEP_ALIVE_IDLE_TIMEOUT, keepAlive.getIdleTimeoutInSeconds()));
+    }
+
+    private static IOStrategy getIOStrategy(String name) {
+        switch (name) {
+            case "worker-thread":
+                return WorkerThreadIOStrategy.getInstance();
+            case "same-thread":
+                return SameThreadIOStrategy.getInstance();
+            case "leader-follower":
+                return LeaderFollowerNIOStrategy.getInstance();
+            case "simple-dynamic":
+                return SimpleDynamicNIOStrategy.getInstance();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ru.khasanov.rest.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * <p>Startup configuration of the service.</p>
+ * <p>Configuration is read from properties file specified by {@value #CONFIG_FILE} system property,
+ * or from {@value #DEFAULT_CONFIG_RESOURCE} classpath resource if the property is not set.
+ * System properties with the same keys override values from the file.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class ServiceConfiguration {
+
+    public static final String CONFIG_FILE = "config.file";
+
+    public static final String DEFAULT_CONFIG_RESOURCE = "service.properties";
+
+    public static final String SERVER_HOST = "server.host";
+
+    public static final String SERVER_PORT = "server.port";
+
+    public static final String SERVER_PATH = "server.path";
+
+    public static final String TRANSPORT_SELECTOR_RUNNERS = "transport.selectorRunners";
+
+    public static final String TRANSPORT_WORKER_CORE_POOL_SIZE = "transport.worker.corePoolSize";
+
+    public static final String TRANSPORT_WORKER_MAX_POOL_SIZE = "transport.worker.maxPoolSize";
+
+    public static final String TRANSPORT_WORKER_QUEUE_LIMIT = "transport.worker.queueLimit";
+
+    public static final String TRANSPORT_IO_STRATEGY = "transport.ioStrategy";
+
+    public static final String TRANSPORT_KEEP_ALIVE_MAX_REQUESTS = "transport.keepAlive.maxRequests";
+
+    public static final String TRANSPORT_KEEP_ALIVE_IDLE_TIMEOUT = "transport.keepAlive.idleTimeout";
+
+    public static final String ACCOUNTS_TIMEOUT = "accounts.timeout";
+
+    public static final String TRANSACTIONS_TIMEOUT = "transactions.timeout";
+
+    public static final String TRANSACTIONS_SCAN_PARALLELISM = "transactions.scanParallelism";
+
+    public static final String TRANSACTIONS_PARALLEL_SCAN_THRESHOLD = "transactions.parallelScanThreshold";
+
+    public static final String HOLDS_MAX_TIME_TO_LIVE = "holds.maxTimeToLive";
+
+    public static final String FEED_BUFFER_SIZE = "feed.bufferSize";
+
+    public static final String IDEMPOTENCY_MAX_KEYS = "idempotency.maxKeys";
+
+    public static final String IDEMPOTENCY_TIME_TO_LIVE = "idempotency.timeToLive";
+
+    public static final String RATE_LIMIT_ACCOUNT_RATE = "rateLimit.account.rate";
+
+    public static final String RATE_LIMIT_ACCOUNT_BURST = "rateLimit.account.burst";
+
+    public static final String RATE_LIMIT_CLIENT_RATE = "rateLimit.client.rate";
+
+    public static final String RATE_LIMIT_CLIENT_BURST = "rateLimit.client.burst";
+
+    public static final String RECONCILIATION_INTERVAL = "reconciliation.interval";
+
+    public static final String COMPACTION_INTERVAL = "compaction.interval";
+
+    public static final String COMPACTION_RETENTION = "compaction.retention";
+
+    public static final String COMPACTION_BATCH_SIZE = "compaction.batchSize";
+
+    public static final String COMPACTION_ARCHIVE_DIRECTORY = "compaction.archiveDirectory";
+
+    public static final String COMPRESSION_ENCODINGS = "compression.encodings";
+
+    public static final String COMPRESSION_MIN_SIZE = "compression.minSize";
+
+    public static final String COMPRESSION_CACHE_SIZE = "compression.cacheSize";
+
+    public static final String JSON_PRE_SERIALIZED = "json.preSerialized";
+
+    public static final String HISTORY_CACHE_SIZE = "history.cacheSize";
+
+    private static Logger logger = LogManager.getLogger(ServiceConfiguration.class);
+
+    private final Properties properties;
+
+    /**
+     * Creates new instance of {@link ServiceConfiguration}.
+     *
+     * @param properties configuration properties. Must not be {@code null}
+     */
+    public ServiceConfiguration(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Load configuration from configuration file and system properties.
+     *
+     * @return loaded {@link ServiceConfiguration}
+     */
+    public static ServiceConfiguration load() {
+        Properties properties = new Properties();
+
+        String configFile = System.getProperty(CONFIG_FILE);
+        try {
+            if (configFile != null) {
+                try (InputStream inputStream = Files.newInputStream(Paths.get(configFile))) {
+                    properties.load(inputStream);
+                }
+            } else {
+                try (InputStream inputStream = ServiceConfiguration.class.getClassLoader()
+                        .getResourceAsStream(DEFAULT_CONFIG_RESOURCE)) {
+                    if (inputStream != null) {
+                        properties.load(inputStream);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read configuration file: " + e.getMessage(), e);
+        }
+
+        for (String key : System.getProperties().stringPropertyNames()) {
+            properties.setProperty(key, System.getProperty(key));
+        }
+
+        return new ServiceConfiguration(properties);
+    }
+
+    /**
+     * Get string value.
+     *
+     * @param key          key. Must not be {@code null}
+     * @param defaultValue value returned if key is not configured
+     * @return configured value if present. {@code defaultValue} otherwise
+     */
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Get integer value.
+     *
+     * @param key          key. Must not be {@code null}
+     * @param defaultValue value returned if key is not configured or configured value is not an integer
+     * @return configured value if present. {@code defaultValue} otherwise
+     */
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    /**
+     * Get long value.
+     *
+     * @param key          key. Must not be {@code null}
+     * @param defaultValue value returned if key is not configured or configured value is not a number
+     * @return configured value if present. {@code defaultValue} otherwise
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value of {}: {}. Using default value {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get boolean value.
+     *
+     * @param key          key. Must not be {@code null}
+     * @param defaultValue value returned if key is not configured
+     * @return configured value if present. {@code defaultValue} otherwise
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Get comma separated list of values.
+     *
+     * @param key          key. Must not be {@code null}
+     * @param defaultValue value returned if key is not configured
+     * @return configured values if present. {@code defaultValue} otherwise
+     */
+    public List<String> getList(String key, List<String> defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                result.add(item.trim());
+            }
+        }
+        return result;
+    }
+}
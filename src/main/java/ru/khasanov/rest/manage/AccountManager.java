@@ -4,6 +4,7 @@ import ru.khasanov.rest.model.UserAccount;
 import ru.khasanov.rest.storage.AccountStorage;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -20,12 +21,16 @@ public class AccountManager {
 
     private static final int DEFAULT_TIMEOUT = 1000;
 
+    private static final String ALL_ACCOUNTS = "all";
+
     private AccountStorage accountStorage;
 
     private ExecutorService executorService;
 
     private int timeout = DEFAULT_TIMEOUT;
 
+    private final SingleFlight<String, List<UserAccount>> allAccountsFlights = new SingleFlight<>();
+
     /**
      * Creates new instance of {@link AccountManager}.
      *
@@ -55,6 +60,26 @@ public class AccountManager {
         this.timeout = timeout;
     }
 
+    /**
+     * Get version of accounts set. Version changes every time account is added or deleted.
+     *
+     * @return version of accounts set
+     */
+    public long getVersion() {
+        return accountStorage.getVersion();
+    }
+
+    /**
+     * Get accounts with the largest balances in descending order of balances.
+     * Accounts are read from balance index without waiting for other operations.
+     *
+     * @param count maximum number of accounts
+     * @return {@link List} of accounts
+     */
+    public List<UserAccount> getTopAccounts(int count) {
+        return accountStorage.getBalanceIndex().getTop(count);
+    }
+
     /**
      * Create new user account.
      *
@@ -91,6 +116,23 @@ public class AccountManager {
         }).get(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Create several user accounts in one storage operation.
+     *
+     * @param accounts accounts to be created. Must not be {@code null}
+     * @return {@link List} of created accounts
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public List<UserAccount> createNewAccounts(List<UserAccount> accounts) throws InterruptedException, ExecutionException, TimeoutException {
+
+        return executorService.submit(() -> {
+            accountStorage.addAccounts(accounts);
+            return accounts;
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Delete user account by id.
      *
@@ -121,18 +163,34 @@ public class AccountManager {
                 accountStorage.getUserAccount(userId)).get(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Get user accounts by ids. Ids of missing accounts are skipped.
+     *
+     * @param userIds user ids. Must not be {@code null}
+     * @return {@link List} of existing user accounts
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public List<UserAccount> getAccounts(Collection<UUID> userIds) throws InterruptedException, ExecutionException, TimeoutException {
+
+        return executorService.submit(() ->
+                accountStorage.getUserAccounts(userIds)).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Get list of all user accounts.
+     * Concurrent requests that are still waiting for the storage thread share one computation.
      *
-     * @return {@link List} of all user accounts
+     * @return {@link List} of all user accounts. The list may be shared and must not be modified
      * @throws InterruptedException if the current thread was interrupted while waiting
      * @throws ExecutionException   if the computation threw an exception
      * @throws TimeoutException     if the wait timed out
      */
     public List<UserAccount> getAllAccounts() throws InterruptedException, ExecutionException, TimeoutException {
 
-        return executorService.submit(() ->
-                accountStorage.getAllUserAccounts()).get(timeout, TimeUnit.MILLISECONDS);
+        return allAccountsFlights.execute(ALL_ACCOUNTS, executorService,
+                accountStorage::getAllUserAccounts).get(timeout, TimeUnit.MILLISECONDS);
 
     }
 }
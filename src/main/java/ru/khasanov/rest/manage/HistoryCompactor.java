@@ -0,0 +1,306 @@
+package ru.khasanov.rest.manage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.storage.AccountStorage;
+import ru.khasanov.rest.storage.TransactionLog;
+import ru.khasanov.rest.storage.TransactionStorage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Class that is used to compact history of deleted accounts.</p>
+ * <p>Deleted account leaves a tombstone. Once tombstone is older than retention time, history of the account
+ * is optionally archived to a file, its postings are purged and transactions whose both parties are purged
+ * are released. Every step is a short task of the storage thread, and every run compacts a limited number
+ * of accounts, so transfers are not stalled by compaction.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class HistoryCompactor {
+
+    private static final int DEFAULT_TIMEOUT = 1000;
+
+    private static final long DEFAULT_RETENTION = TimeUnit.DAYS.toMillis(1);
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    // number of transactions released by one task of the storage thread
+    private static final int RELEASE_SLICE = 4096;
+
+    private static Logger logger = LogManager.getLogger(HistoryCompactor.class);
+
+    private final TransactionStorage transactionStorage;
+
+    private final AccountStorage accountStorage;
+
+    private final ExecutorService executorService;
+
+    private int timeout = DEFAULT_TIMEOUT;
+
+    private volatile long retention = DEFAULT_RETENTION;
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    private volatile Path archiveDirectory;
+
+    private volatile Runnable compactionListener;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates new instance of {@link HistoryCompactor}.
+     *
+     * @param transactionStorage {@link TransactionStorage}. Must not be {@code null}
+     * @param accountStorage     {@link AccountStorage}. Must not be {@code null}
+     * @param executorService    {@link ExecutorService} of storages. Must not be {@code null}
+     */
+    public HistoryCompactor(TransactionStorage transactionStorage, AccountStorage accountStorage,
+                            ExecutorService executorService) {
+        this.transactionStorage = transactionStorage;
+        this.accountStorage = accountStorage;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Get timeout of every task of the storage thread in milliseconds.
+     *
+     * @return timeout in milliseconds.
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set up timeout of every task of the storage thread.
+     *
+     * @param timeout timeout in milliseconds
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get time history of deleted account is kept before compaction.
+     *
+     * @return retention time in milliseconds
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * Set up time history of deleted account is kept before compaction.
+     *
+     * @param retention retention time in milliseconds
+     */
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * Get maximum number of accounts compacted by one run.
+     *
+     * @return number of accounts
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set up maximum number of accounts compacted by one run.
+     *
+     * @param batchSize number of accounts
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get directory history of deleted accounts is archived to.
+     *
+     * @return directory. {@code null} if history is purged without archiving
+     */
+    public Path getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    /**
+     * Set up directory history of deleted accounts is archived to before it is purged. Transactions of account
+     * are appended to {@code <user id>.csv} file as {@code from,to,amount,timestamp} lines.
+     *
+     * @param archiveDirectory directory. In case of {@code null} value history is purged without archiving
+     */
+    public void setArchiveDirectory(Path archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    /**
+     * Set up listener notified after compaction changed history, e.g. to invalidate cached responses.
+     *
+     * @param compactionListener listener. In case of {@code null} value nobody is notified
+     */
+    public void setCompactionListener(Runnable compactionListener) {
+        this.compactionListener = compactionListener;
+    }
+
+    /**
+     * Get the earliest time compaction may change history: retention time after deletion of the oldest
+     * account waiting for compaction, or retention time from now if there is no such account.
+     *
+     * @return time in milliseconds
+     */
+    public long getEarliestCompaction() {
+        long oldest = System.currentTimeMillis();
+        for (long deletedAt : accountStorage.getTombstones().values()) {
+            oldest = Math.min(oldest, deletedAt);
+        }
+        return oldest + retention;
+    }
+
+    /**
+     * Compact history of accounts deleted earlier than retention time ago, up to batch size accounts.
+     *
+     * @return number of compacted accounts
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public int compact() throws InterruptedException, ExecutionException, TimeoutException {
+        long deletedBefore = System.currentTimeMillis() - retention;
+
+        Map<UUID, Long> tombstones = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Long> tombstone : accountStorage.getTombstones().entrySet()) {
+            if (tombstones.size() == batchSize) {
+                break;
+            }
+            if (tombstone.getValue() <= deletedBefore) {
+                tombstones.put(tombstone.getKey(), tombstone.getValue());
+            }
+        }
+
+        int compacted = 0;
+        int released = 0;
+        for (Map.Entry<UUID, Long> tombstone : tombstones.entrySet()) {
+            UUID userId = tombstone.getKey();
+            Long deletedAt = tombstone.getValue();
+
+            int[] positions = executorService.submit(() ->
+                    accountStorage.getUserAccount(userId) == null ? transactionStorage.getAccountPositions(userId) : null
+            ).get(timeout, TimeUnit.MILLISECONDS);
+
+            if (positions == null) {
+                // account was created again, and its history belongs to it
+                accountStorage.removeTombstone(userId);
+                continue;
+            }
+
+            if (!archive(userId, positions)) {
+                continue;
+            }
+
+            boolean purged = executorService.submit(() -> {
+                if (!deletedAt.equals(accountStorage.getTombstones().get(userId))) {
+                    // account was created and deleted again since positions were read, and may have new history.
+                    // It is compacted once its new tombstone is due, archiving the history read here once more
+                    return false;
+                }
+                accountStorage.removeTombstone(userId);
+                if (accountStorage.getUserAccount(userId) != null) {
+                    return false;
+                }
+                transactionStorage.purgeAccount(userId);
+                return true;
+            }).get(timeout, TimeUnit.MILLISECONDS);
+
+            if (!purged) {
+                continue;
+            }
+
+            for (int from = 0; from < positions.length; from += RELEASE_SLICE) {
+                int sliceFrom = from;
+                released += executorService.submit(() -> transactionStorage.releaseTransactions(
+                        positions, sliceFrom, Math.min(sliceFrom + RELEASE_SLICE, positions.length))
+                ).get(timeout, TimeUnit.MILLISECONDS);
+            }
+            compacted++;
+        }
+
+        if (compacted > 0) {
+            logger.info("Compacted history of {} deleted accounts, released {} transactions", compacted, released);
+            executorService.submit(transactionStorage::advanceCompactionEpoch).get(timeout, TimeUnit.MILLISECONDS);
+
+            Runnable listener = compactionListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Compact history periodically.
+     *
+     * @param intervalMillis interval between runs in milliseconds. Must be positive
+     */
+    public synchronized void schedule(long intervalMillis) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "history-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException | RuntimeException e) {
+                logger.warn("Scheduled history compaction failed: " + e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean archive(UUID userId, int[] positions) {
+        Path directory = archiveDirectory;
+        if (directory == null || positions.length == 0) {
+            return true;
+        }
+
+        // positions were read by the storage thread, and transactions at them are released only by this class
+        TransactionLog log = transactionStorage.getTransactionLog();
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(userId + ".csv"),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+
+            for (int position : positions) {
+                TransferTransaction transaction = log.get(position);
+                if (transaction != null) {
+                    writer.write(transaction.getFrom() + "," + transaction.getTo() + ","
+                            + transaction.getAmount().toPlainString() + "," + transaction.getTimestamp());
+                    writer.newLine();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to archive history of deleted account {}, keeping it: {}", userId, e.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.khasanov.rest.manage;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * <p>Bounded cache of idempotency keys and outcomes of operations started with them.</p>
+ * <p>Keys expire after configured time to live. When the number of keys exceeds the bound,
+ * the oldest keys are evicted even if they have not expired yet. Keys of operations that are still in progress
+ * are never evicted, so the bound may be exceeded while they are running.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class IdempotencyCache {
+
+    private static final int DEFAULT_MAX_SIZE = 100_000;
+
+    private static final long DEFAULT_TIME_TO_LIVE = 24 * 60 * 60 * 1000;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Queue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    /**
+     * Get maximum number of keys.
+     *
+     * @return maximum number of keys
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Set up maximum number of keys.
+     *
+     * @param maxSize maximum number of keys
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get time to live of keys in milliseconds.
+     *
+     * @return time to live of keys in milliseconds
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Set up time to live of keys.
+     *
+     * @param timeToLive time to live of keys in milliseconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Get number of cached keys.
+     *
+     * @return number of cached keys
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get outcome of operation started with passed key, starting the operation if key is not known.
+     *
+     * @param key         idempotency key. Must not be {@code null}
+     * @param fingerprint fingerprint of operation parameters. Must not be {@code null}
+     * @param operation   starts the operation and returns its outcome. Must not be {@code null}
+     * @return outcome of the operation started with passed key
+     * @throws IllegalStateException if key was used for operation with other parameters
+     */
+    public Future<?> getOrStart(String key, Object fingerprint, Supplier<CompletableFuture<?>> operation) {
+        long now = System.currentTimeMillis();
+        Entry created = new Entry(key, fingerprint, now + timeToLive);
+
+        // key is taken first and operation is started outside of the map, so it is started at most once
+        Entry entry = entries.compute(key, (k, existing) ->
+                existing != null && (existing.expiresAt > now || !existing.outcome.isDone()) ? existing : created);
+
+        if (entry != created) {
+            if (!entry.fingerprint.equals(fingerprint)) {
+                throw new IllegalStateException("Idempotency key was used with other parameters: " + key);
+            }
+            return entry.outcome;
+        }
+
+        evictionQueue.add(created);
+        try {
+            operation.get().whenComplete((result, e) -> {
+                if (e != null) {
+                    created.outcome.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                } else {
+                    created.outcome.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            // operation was not started, so the key can be used again
+            entries.remove(key, created);
+            created.outcome.completeExceptionally(e);
+            throw e;
+        } finally {
+            evict(now);
+        }
+
+        return created.outcome;
+    }
+
+    private void evict(long now) {
+        Entry eldest;
+        while ((eldest = evictionQueue.peek()) != null && (eldest.expiresAt <= now || entries.size() > maxSize)
+                && eldest.outcome.isDone()) {
+            if (evictionQueue.remove(eldest)) {
+                entries.remove(eldest.key, eldest);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final String key;
+
+        private final Object fingerprint;
+
+        private final CompletableFuture<Object> outcome = new CompletableFuture<>();
+
+        private final long expiresAt;
+
+        Entry(String key, Object fingerprint, long expiresAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ru.khasanov.rest.manage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.khasanov.rest.model.ReconciliationReport;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.storage.AccountStorage;
+import ru.khasanov.rest.storage.TransactionLog;
+import ru.khasanov.rest.storage.TransactionStorage;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Class that is used to reconcile account balances with the ledger.</p>
+ * <p>Balance of every account must be equal to its initial balance plus amounts it received minus amounts
+ * it transmitted. Length of the ledger and balances are captured by a short task of the storage thread, and
+ * the ledger is then replayed by segments in parallel, so transfers are not paused while reconciliation runs.</p>
+ * <p>Transactions of deleted accounts are replayed until released by {@link HistoryCompactor}, but only
+ * existing accounts are checked. Account created again with id of a deleted or replaced account is checked
+ * only against transactions after its {@linkplain UserAccount#getOpeningPosition() opening position}.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class LedgerReconciler {
+
+    private static final int DEFAULT_TIMEOUT = 1000;
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private static Logger logger = LogManager.getLogger(LedgerReconciler.class);
+
+    private final TransactionStorage transactionStorage;
+
+    private final AccountStorage accountStorage;
+
+    private final ExecutorService executorService;
+
+    private final ForkJoinPool forkJoinPool;
+
+    private int timeout = DEFAULT_TIMEOUT;
+
+    private volatile ReconciliationReport lastReport;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates new instance of {@link LedgerReconciler}
+     *
+     * @param transactionStorage {@link TransactionStorage}. Must not be {@code null}
+     * @param accountStorage     {@link AccountStorage}. Must not be {@code null}
+     * @param executorService    {@link ExecutorService} of storages. Must not be {@code null}
+     * @param forkJoinPool       {@link ForkJoinPool} replaying the ledger. Must not be {@code null}
+     */
+    public LedgerReconciler(TransactionStorage transactionStorage, AccountStorage accountStorage,
+                            ExecutorService executorService, ForkJoinPool forkJoinPool) {
+        this.transactionStorage = transactionStorage;
+        this.accountStorage = accountStorage;
+        this.executorService = executorService;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Get timeout of capturing ledger and balances in milliseconds.
+     *
+     * @return timeout in milliseconds.
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set up timeout of capturing ledger and balances.
+     *
+     * @param timeout timeout in milliseconds
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get report of the last finished reconciliation.
+     *
+     * @return {@link ReconciliationReport}. {@code null} if reconciliation has not run yet
+     */
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Reconcile account balances with the ledger.
+     *
+     * @return {@link ReconciliationReport}
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public ReconciliationReport reconcile() throws InterruptedException, ExecutionException, TimeoutException {
+        long started = System.currentTimeMillis();
+
+        Snapshot snapshot = executorService.submit(() -> {
+            List<UserAccount> accounts = accountStorage.getAllUserAccounts();
+            List<BigDecimal> balances = new ArrayList<>(accounts.size());
+            for (UserAccount account : accounts) {
+                balances.add(account.getBalance());
+            }
+            return new Snapshot(transactionStorage.getTransactionLog().size(), accounts, balances);
+        }).get(timeout, TimeUnit.MILLISECONDS);
+
+        Map<UUID, Integer> openingPositions = new HashMap<>();
+        for (UserAccount account : snapshot.accounts) {
+            if (account.getOpeningPosition() > 0) {
+                openingPositions.put(account.getUserId(), account.getOpeningPosition());
+            }
+        }
+
+        Map<UUID, BigDecimal> netFlows = forkJoinPool.invoke(new NetFlowTask(
+                transactionStorage.getTransactionLog(), openingPositions, 0, snapshot.transactions));
+
+        List<ReconciliationReport.Discrepancy> discrepancies = new ArrayList<>();
+        for (int i = 0; i < snapshot.accounts.size(); i++) {
+            UserAccount account = snapshot.accounts.get(i);
+            BigDecimal balance = snapshot.balances.get(i);
+            BigDecimal netFlow = netFlows.getOrDefault(account.getUserId(), BigDecimal.ZERO);
+
+            if (account.getOpeningBalance().add(netFlow).compareTo(balance) != 0) {
+                discrepancies.add(new ReconciliationReport.Discrepancy(
+                        account.getUserId(), account.getOpeningBalance(), netFlow, balance));
+            }
+        }
+
+        ReconciliationReport report = new ReconciliationReport(started, snapshot.transactions,
+                snapshot.accounts.size(), System.currentTimeMillis() - started, discrepancies);
+        lastReport = report;
+
+        if (!discrepancies.isEmpty()) {
+            logger.warn("Reconciliation found {} accounts not matching the ledger", discrepancies.size());
+        }
+        return report;
+    }
+
+    /**
+     * Reconcile account balances with the ledger periodically. Reports are available through
+     * {@link #getLastReport()}.
+     *
+     * @param intervalMillis interval between reconciliations in milliseconds. Must be positive
+     */
+    public synchronized void schedule(long intervalMillis) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ledger-reconciler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException | RuntimeException e) {
+                logger.warn("Scheduled reconciliation failed: " + e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Snapshot {
+
+        // transactions below this position are replayed
+        private final int transactions;
+
+        private final List<UserAccount> accounts;
+
+        private final List<BigDecimal> balances;
+
+        Snapshot(int transactions, List<UserAccount> accounts, List<BigDecimal> balances) {
+            this.transactions = transactions;
+            this.accounts = accounts;
+            this.balances = balances;
+        }
+    }
+
+    private static class NetFlowTask extends RecursiveTask<Map<UUID, BigDecimal>> {
+
+        private final TransactionLog transactions;
+
+        // transactions below opening position of account belong to its previous incarnations
+        private final Map<UUID, Integer> openingPositions;
+
+        private final int from;
+
+        private final int to;
+
+        NetFlowTask(TransactionLog transactions, Map<UUID, Integer> openingPositions, int from, int to) {
+            this.transactions = transactions;
+            this.openingPositions = openingPositions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<UUID, BigDecimal> compute() {
+            if (to - from <= SEGMENT_SIZE) {
+                Map<UUID, BigDecimal> netFlows = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    TransferTransaction transaction = transactions.get(i);
+                    if (transaction == null) {
+                        continue;
+                    }
+                    if (i >= openingPositions.getOrDefault(transaction.getFrom(), 0)) {
+                        netFlows.merge(transaction.getFrom(), transaction.getAmount().negate(), BigDecimal::add);
+                    }
+                    if (i >= openingPositions.getOrDefault(transaction.getTo(), 0)) {
+                        netFlows.merge(transaction.getTo(), transaction.getAmount(), BigDecimal::add);
+                    }
+                }
+                return netFlows;
+            }
+
+            int middle = (from + to) >>> 1;
+            NetFlowTask left = new NetFlowTask(transactions, openingPositions, from, middle);
+            left.fork();
+            Map<UUID, BigDecimal> right = new NetFlowTask(transactions, openingPositions, middle, to).compute();
+            Map<UUID, BigDecimal> joined = left.join();
+
+            // smaller map is merged into larger one
+            Map<UUID, BigDecimal> target = joined.size() >= right.size() ? joined : right;
+            Map<UUID, BigDecimal> source = target == joined ? right : joined;
+            source.forEach((userId, amount) -> target.merge(userId, amount, BigDecimal::add));
+            return target;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.khasanov.rest.manage;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Token bucket rate limiter with separate bucket per key.</p>
+ * <p>Bucket is kept in a single {@code long} as the time it becomes full again, so taking a token is one
+ * compare-and-set without locks. Full buckets carry no information and are evicted from time to time,
+ * so memory is used only by keys that were limited recently.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class RateLimiter {
+
+    // every EVICTION_PERIOD-th acquisition on average looks for full buckets
+    private static final int EVICTION_PERIOD = 1024;
+
+    private final long interval;
+
+    private final long capacity;
+
+    private final ConcurrentMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Creates new instance of {@link RateLimiter}.
+     *
+     * @param permitsPerSecond rate at which tokens are added to every bucket. Must be positive
+     * @param burst            bucket capacity. Must be positive
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Invalid rate limit: " + permitsPerSecond + " per second, burst " + burst);
+        }
+
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.capacity = interval * burst;
+    }
+
+    /**
+     * Take token from bucket of key.
+     *
+     * @param key key. Must not be {@code null}
+     * @return {@code 0} if token was taken. Otherwise time in nanoseconds until token is available
+     */
+    public long tryAcquire(Object key) {
+        long now = System.nanoTime();
+
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        long wait;
+        while (true) {
+            // bucket is full at fullAt and misses one token per interval before that
+            long fullAt = bucket.get();
+            long newFullAt = Math.max(fullAt, now) + interval;
+            wait = newFullAt - now - capacity;
+            if (wait > 0 || bucket.compareAndSet(fullAt, newFullAt)) {
+                break;
+            }
+        }
+
+        if (ThreadLocalRandom.current().nextInt(EVICTION_PERIOD) == 0) {
+            evictIdle(now);
+        }
+        return Math.max(wait, 0);
+    }
+
+    /**
+     * Check whether bucket of key has a token, without taking it.
+     *
+     * @param key key. Must not be {@code null}
+     * @return {@code 0} if token is available. Otherwise time in nanoseconds until token is available
+     */
+    public long check(Object key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        return Math.max(Math.max(bucket.get(), now) + interval - now - capacity, 0);
+    }
+
+    /**
+     * Give back token taken from bucket of key by {@link #tryAcquire(Object)}, when the request it was
+     * taken for is rejected by another limit after all.
+     *
+     * @param key key. Must not be {@code null}
+     */
+    public void release(Object key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            // bucket evicted in between was full, there is nothing to give back then
+            bucket.addAndGet(-interval);
+        }
+    }
+
+    /**
+     * Get number of buckets that are not evicted yet.
+     *
+     * @return number of buckets
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Evict full buckets. Called from time to time by {@link #tryAcquire(Object)}.
+     */
+    public void evictIdle() {
+        evictIdle(System.nanoTime());
+    }
+
+    private void evictIdle(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            Iterator<Map.Entry<Object, AtomicLong>> iterator = buckets.entrySet().iterator();
+            while (iterator.hasNext()) {
+                // a token taken from bucket while it is removed is forgiven, that is harmless
+                if (iterator.next().getValue().get() <= now) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
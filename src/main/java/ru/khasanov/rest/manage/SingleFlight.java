@@ -0,0 +1,67 @@
+package ru.khasanov.rest.manage;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>Coalescing of identical concurrent reads.</p>
+ * <p>Requests with equal keys that arrive while computation for the key is still waiting in the executor queue
+ * share that computation and its result. Once computation starts, the key is released and later requests start
+ * a new computation, so every request gets a result computed after it arrived, exactly as if it was queued
+ * on its own.</p>
+ *
+ * @param <K> type of keys. Keys must implement {@code equals} and {@code hashCode}
+ * @param <V> type of results. Results are shared by requests and must not be modified
+ * @author Aleksandr Khasanov
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Join pending computation for key, or submit new one.
+     *
+     * @param key         key of request. Must not be {@code null}
+     * @param executor    executor computation is submitted to. Must not be {@code null}
+     * @param computation computation of result. Must not be {@code null}
+     * @return {@link CompletableFuture} of result, shared by all requests that joined the computation
+     * @throws RejectedExecutionException if computation cannot be submitted to executor
+     */
+    public CompletableFuture<V> execute(K key, Executor executor, Callable<V> computation) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> pending = flights.putIfAbsent(key, flight);
+        if (pending != null) {
+            return pending;
+        }
+
+        try {
+            executor.execute(() -> {
+                // requests arriving from now on may expect changes the computation does not see
+                flights.remove(key, flight);
+                try {
+                    flight.complete(computation.call());
+                } catch (Throwable e) {
+                    flight.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        return flight;
+    }
+
+    /**
+     * Get number of keys with pending computations.
+     *
+     * @return number of keys
+     */
+    public int size() {
+        return flights.size();
+    }
+}
@@ -0,0 +1,220 @@
+package ru.khasanov.rest.manage;
+
+import java.util.function.Consumer;
+
+/**
+ * <p>Hierarchical timing wheel of items expiring at given times.</p>
+ * <p>Every level has {@value #SLOTS} slots. A slot of the first level spans one tick, a slot of every next level
+ * spans all slots of the previous one. Item is put into the lowest level able to hold its deadline and is moved
+ * to lower levels as the wheel turns, so scheduling, cancelling and expiring an item take constant time
+ * regardless of the number of scheduled items. Deadlines farther than the wheel can hold are moved
+ * down only when they come into its range.</p>
+ * <p>Wheel is not thread safe and must be used by one thread at a time.</p>
+ *
+ * @param <T> type of items
+ * @author Aleksandr Khasanov
+ */
+public class TimingWheel<T> {
+
+    static final int SLOTS = 64;
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+
+    private final int levels;
+
+    private final Timeout<T>[][] wheels;
+
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * Creates new instance of {@link TimingWheel}.
+     *
+     * @param tickMillis  duration of one tick in milliseconds. Must be positive
+     * @param levels      number of levels. Must be positive. Wheel holds deadlines up to
+     *                    {@code tickMillis * 64^levels} milliseconds ahead
+     * @param startMillis current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis <= 0 || levels <= 0 || levels * SLOT_BITS >= Long.SIZE - 1) {
+            throw new IllegalArgumentException("Invalid timing wheel size: tick " + tickMillis + ", levels " + levels);
+        }
+
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.currentTick = startMillis / tickMillis;
+
+        wheels = new Timeout[levels][SLOTS];
+        for (int level = 0; level < levels; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Timeout<T> head = new Timeout<>(this, null, 0);
+                head.next = head;
+                head.previous = head;
+                wheels[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Get duration of one tick.
+     *
+     * @return duration of one tick in milliseconds
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Get number of scheduled items.
+     *
+     * @return number of scheduled items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedule item. Item expires on the first tick that is not earlier than its deadline.
+     *
+     * @param item           item. Must not be {@code null}
+     * @param deadlineMillis deadline in milliseconds. Deadlines in the past expire on the next tick
+     * @return {@link Timeout} that can be used to cancel item
+     */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        long deadlineTick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis == 0 ? 0 : 1);
+        Timeout<T> timeout = new Timeout<>(this, item, deadlineTick);
+        // slot of the current tick has already expired
+        place(timeout, currentTick + 1);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Turn the wheel up to passed time and pass expired items to consumer tick by tick.
+     *
+     * @param nowMillis current time in milliseconds
+     * @param expired   consumer of expired items. Must not be {@code null}
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+
+            currentTick++;
+            cascade();
+
+            Timeout<T> head = wheels[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Timeout<T> timeout = head.next;
+                timeout.unlink();
+                size--;
+                expired.accept(timeout.item);
+            }
+        }
+    }
+
+    private void cascade() {
+        for (int level = 1; level < levels; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+
+            Timeout<T> head = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+            while (head.next != head) {
+                Timeout<T> timeout = head.next;
+                timeout.unlink();
+                // slot of the current tick expires right after cascading
+                place(timeout, currentTick);
+            }
+        }
+    }
+
+    private void place(Timeout<T> timeout, long earliestTick) {
+        long tick = Math.max(timeout.deadlineTick, earliestTick);
+        long delta = tick - currentTick;
+
+        int level = 0;
+        while (level < levels - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+
+        if (delta >= 1L << (SLOT_BITS * levels)) {
+            // too far away: park item in the farthest slot and place it again once that slot is reached
+            tick = currentTick + (1L << (SLOT_BITS * levels)) - 1;
+        }
+
+        timeout.link(wheels[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)]);
+    }
+
+    /**
+     * Scheduled item.
+     *
+     * @param <T> type of item
+     */
+    public static final class Timeout<T> {
+
+        private final TimingWheel<T> wheel;
+
+        private final T item;
+
+        private final long deadlineTick;
+
+        private Timeout<T> previous;
+
+        private Timeout<T> next;
+
+        Timeout(TimingWheel<T> wheel, T item, long deadlineTick) {
+            this.wheel = wheel;
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Get scheduled item.
+         *
+         * @return item
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Cancel item, so that it never expires. Must be called by the thread using the wheel.
+         *
+         * @return {@code true} if item was cancelled. {@code false} if it has already expired or been cancelled
+         */
+        public boolean cancel() {
+            if (next == null) {
+                return false;
+            }
+
+            unlink();
+            wheel.size--;
+            return true;
+        }
+
+        private void link(Timeout<T> head) {
+            previous = head.previous;
+            next = head;
+            head.previous.next = this;
+            head.previous = this;
+        }
+
+        private void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = null;
+            next = null;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package ru.khasanov.rest.manage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.storage.TransactionLog;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Live feed of committed transfer transactions.
+ * <p>Every subscriber has its own bounded buffer. Subscribers that do not keep up with the feed
+ * and overflow their buffer are dropped. Already committed transactions requested by subscriber
+ * are read from the log lazily, at most buffer size of positions at a time. Until subscriber catches up
+ * with the head of the log, transactions published in between are read from the log as well,
+ * so replaying a long backlog does not overflow the buffer.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class TransactionFeed {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private static Logger logger = LogManager.getLogger(TransactionFeed.class);
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService dispatcher;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Creates new instance of {@link TransactionFeed} delivering events on daemon threads.
+     */
+    public TransactionFeed() {
+        this(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-feed");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Creates new instance of {@link TransactionFeed}.
+     *
+     * @param dispatcher executor used to deliver events to subscribers. Must not be {@code null}
+     */
+    public TransactionFeed(ExecutorService dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Get size of per-subscriber buffer.
+     *
+     * @return maximum number of undelivered events per subscriber
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Set up size of per-subscriber buffer.
+     *
+     * @param bufferSize maximum number of undelivered events per subscriber
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Get number of active subscriptions.
+     *
+     * @return number of active subscriptions
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Subscribe to the feed. Must be called by the thread publishing transactions.
+     *
+     * @param filter   filter of transactions to deliver. Must not be {@code null}
+     * @param log      log of committed transactions. Transactions must be appended to it before they are published.
+     *                 Must not be {@code null}
+     * @param from     position of the first committed transaction to deliver before live ones. Must not exceed
+     *                 size of log
+     * @param listener listener receiving transactions. Must not be {@code null}
+     * @return created {@link Subscription}
+     */
+    public Subscription subscribe(Predicate<TransferTransaction> filter, TransactionLog log, int from,
+                                  TransactionListener listener) {
+
+        Subscription subscription = new Subscription(filter, log, from, listener);
+        subscriptions.add(subscription);
+        subscription.schedule();
+        return subscription;
+    }
+
+    /**
+     * Publish committed transaction to all subscribers.
+     *
+     * @param position    position of transaction in storage
+     * @param transaction committed transaction. Must not be {@code null}
+     */
+    public void publish(long position, TransferTransaction transaction) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(new Event(position, transaction));
+        }
+    }
+
+    /**
+     * Listener of transactions published to the feed.
+     */
+    public interface TransactionListener {
+
+        /**
+         * Called for every transaction delivered to the subscriber.
+         *
+         * @param position    position of transaction in storage
+         * @param transaction transaction
+         * @throws IOException if transaction could not be delivered. Subscription is closed in this case
+         */
+        void onTransaction(long position, TransferTransaction transaction) throws IOException;
+
+        /**
+         * Called once when subscription is closed.
+         */
+        void onClose();
+    }
+
+    /**
+     * Subscription to the feed.
+     */
+    public class Subscription {
+
+        private final Predicate<TransferTransaction> filter;
+
+        private final TransactionListener listener;
+
+        private final TransactionLog log;
+
+        // position of the next committed transaction to read, accessed only while draining
+        private int backlogPosition;
+
+        // whether published transactions are read from the log rather than buffered, cleared once under lock
+        private volatile boolean catchingUp;
+
+        private final Queue<Event> backlog = new ArrayDeque<>();
+
+        private final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(Predicate<TransferTransaction> filter, TransactionLog log, int from,
+                             TransactionListener listener) {
+            this.filter = filter;
+            this.log = log;
+            this.backlogPosition = from;
+            this.catchingUp = from < log.size();
+            this.listener = listener;
+        }
+
+        /**
+         * Check whether subscription is closed.
+         *
+         * @return {@code true} if subscription is closed. {@code false} otherwise
+         */
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * Close subscription. No transactions are delivered after subscription is closed.
+         */
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                buffer.clear();
+                listener.onClose();
+            }
+        }
+
+        private void offer(Event event) {
+            if (closed.get()) {
+                return;
+            }
+
+            if (catchingUp) {
+                synchronized (this) {
+                    if (catchingUp) {
+                        // transaction is already in the log and is read from there
+                        schedule();
+                        return;
+                    }
+                }
+            }
+
+            if (!filter.test(event.transaction)) {
+                return;
+            }
+
+            if (!buffer.offer(event)) {
+                logger.warn("Dropping slow subscriber of transaction feed at position {}", event.position);
+                close();
+                return;
+            }
+
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Event event;
+                while (!closed.get() && (event = nextEvent()) != null) {
+                    listener.onTransaction(event.position, event.transaction);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Failed to deliver transaction to subscriber: {}", e.getMessage());
+                close();
+            } finally {
+                scheduled.set(false);
+            }
+
+            if (!closed.get() && !buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private Event nextEvent() {
+            if (backlog.isEmpty() && catchingUp) {
+                readBacklog();
+            }
+            Event event = backlog.poll();
+            return event != null ? event : buffer.poll();
+        }
+
+        private void readBacklog() {
+            while (backlog.isEmpty()) {
+                int size = log.size();
+                if (backlogPosition == size) {
+                    // transactions are published after they are appended, so none is missed if log did not grow
+                    synchronized (this) {
+                        if (backlogPosition == log.size()) {
+                            catchingUp = false;
+                            return;
+                        }
+                    }
+                    continue;
+                }
+
+                int end = (int) Math.min(size, (long) backlogPosition + bufferSize);
+                for (; backlogPosition < end; backlogPosition++) {
+                    TransferTransaction transaction = log.get(backlogPosition);
+                    // released transactions are null
+                    if (transaction != null && filter.test(transaction)) {
+                        backlog.add(new Event(backlogPosition, transaction));
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Event {
+
+        private final long position;
+
+        private final TransferTransaction transaction;
+
+        Event(long position, TransferTransaction transaction) {
+            this.position = position;
+            this.transaction = transaction;
+        }
+    }
+}
@@ -2,20 +2,35 @@ package ru.khasanov.rest.manage;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import ru.khasanov.rest.model.Hold;
+import ru.khasanov.rest.model.ScheduledTransfer;
 import ru.khasanov.rest.model.TransferTransaction;
 import ru.khasanov.rest.model.UserAccount;
 import ru.khasanov.rest.storage.AccountStorage;
+import ru.khasanov.rest.storage.QueryPlan;
+import ru.khasanov.rest.storage.QueryResult;
+import ru.khasanov.rest.storage.TransactionQuery;
 import ru.khasanov.rest.storage.TransactionStorage;
 
 import javax.ws.rs.core.MultivaluedMap;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * Class that is used to manage transfer transactions.
@@ -26,6 +41,14 @@ public class TransactionManager {
 
     private static final int DEFAULT_TIMEOUT = 1000;
 
+    private static final long DEFAULT_HOLD_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(7);
+
+    private static final long SCHEDULER_TICK = 100;
+
+    private static final int TIMING_WHEEL_LEVELS = 5;
+
+    private static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 64 * 1024;
+
     private static Logger logger = LogManager.getLogger(TransactionManager.class);
 
     private TransactionStorage transactionStorage;
@@ -34,8 +57,33 @@ public class TransactionManager {
 
     private ExecutorService executorService;
 
+    private TransactionFeed transactionFeed = new TransactionFeed();
+
+    private IdempotencyCache idempotencyCache = new IdempotencyCache();
+
     private int timeout = DEFAULT_TIMEOUT;
 
+    private long maxHoldTimeToLive = DEFAULT_HOLD_TIME_TO_LIVE;
+
+    private volatile ForkJoinPool scanPool;
+
+    private volatile int parallelScanThreshold = DEFAULT_PARALLEL_SCAN_THRESHOLD;
+
+    private final SingleFlight<TransactionQuery, PlannedQuery> queryFlights = new SingleFlight<>();
+
+    // holds, scheduled transfers and their timing wheels are accessed only by the storage thread
+    private final Map<UUID, TimingWheel.Timeout<Hold>> holds = new HashMap<>();
+
+    private final TimingWheel<Hold> holdExpiry =
+            new TimingWheel<>(SCHEDULER_TICK, TIMING_WHEEL_LEVELS, System.currentTimeMillis());
+
+    private final Map<UUID, TimingWheel.Timeout<ScheduledTransfer>> scheduledTransfers = new HashMap<>();
+
+    private final TimingWheel<ScheduledTransfer> transferSchedule =
+            new TimingWheel<>(SCHEDULER_TICK, TIMING_WHEEL_LEVELS, System.currentTimeMillis());
+
+    private ScheduledExecutorService scheduler;
+
     /**
      * Creates new instance of {@link TransactionManager}
      *
@@ -67,6 +115,115 @@ public class TransactionManager {
         this.timeout = timeout;
     }
 
+    /**
+     * Get maximum time to live of holds. It is also time to live of holds created without one.
+     *
+     * @return maximum time to live in milliseconds
+     */
+    public long getMaxHoldTimeToLive() {
+        return maxHoldTimeToLive;
+    }
+
+    /**
+     * Set up maximum time to live of holds. It is also time to live of holds created without one.
+     *
+     * @param maxHoldTimeToLive maximum time to live in milliseconds
+     */
+    public void setMaxHoldTimeToLive(long maxHoldTimeToLive) {
+        this.maxHoldTimeToLive = maxHoldTimeToLive;
+    }
+
+    /**
+     * Get pool scanning transactions in parallel.
+     *
+     * @return {@link ForkJoinPool}. {@code null} if transactions are scanned sequentially
+     */
+    public ForkJoinPool getScanPool() {
+        return scanPool;
+    }
+
+    /**
+     * Set up pool scanning transactions in parallel. Scans of at least {@link #getParallelScanThreshold()}
+     * transactions are split into segments scanned by this pool, without occupying the thread committing transfers.
+     *
+     * @param scanPool {@link ForkJoinPool}. In case of {@code null} value transactions are scanned sequentially
+     */
+    public void setScanPool(ForkJoinPool scanPool) {
+        this.scanPool = scanPool;
+    }
+
+    /**
+     * Get minimum number of transactions scanned in parallel.
+     *
+     * @return number of transactions
+     */
+    public int getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    /**
+     * Set up minimum number of transactions scanned in parallel. Smaller scans are sequential.
+     *
+     * @param parallelScanThreshold number of transactions
+     */
+    public void setParallelScanThreshold(int parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    /**
+     * Get ledger version. Version changes every time transaction is committed.
+     *
+     * @return ledger version
+     */
+    public long getLedgerVersion() {
+        return transactionStorage.getVersion();
+    }
+
+    /**
+     * Get compaction epoch. Epoch changes every time a run of history compaction is finished.
+     *
+     * @return compaction epoch
+     */
+    public long getCompactionEpoch() {
+        return transactionStorage.getCompactionEpoch();
+    }
+
+    /**
+     * Get feed of committed transactions.
+     *
+     * @return {@link TransactionFeed}
+     */
+    public TransactionFeed getTransactionFeed() {
+        return transactionFeed;
+    }
+
+    /**
+     * Set up feed of committed transactions.
+     *
+     * @param transactionFeed {@link TransactionFeed}. Must not be {@code null}
+     */
+    public void setTransactionFeed(TransactionFeed transactionFeed) {
+        this.transactionFeed = transactionFeed;
+    }
+
+    /**
+     * Get cache of idempotency keys of transfers.
+     *
+     * @return {@link IdempotencyCache}
+     */
+    public IdempotencyCache getIdempotencyCache() {
+        return idempotencyCache;
+    }
+
+    /**
+     * Set up cache of idempotency keys of transfers.
+     *
+     * @param idempotencyCache {@link IdempotencyCache}. Must not be {@code null}
+     */
+    public void setIdempotencyCache(IdempotencyCache idempotencyCache) {
+        this.idempotencyCache = idempotencyCache;
+    }
+
     /**
      * Transfer amount from transmitter to recipient.
      *
@@ -81,6 +238,261 @@ public class TransactionManager {
         executorService.submit(new TransferTask(fromId, toId, amount)).get(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * <p>Transfer amount from transmitter to recipient at most once per idempotency key.</p>
+     * <p>Repeated calls with the same key do not perform transfer again and
+     * report outcome of the first call, waiting for it if transfer is still in progress.</p>
+     *
+     * @param idempotencyKey idempotency key. In case of {@code null} value transfer is always performed
+     * @param fromId         transmitter id. Must not be {@code null}
+     * @param toId           recipient id. Must not be {@code null}
+     * @param amount         amount of money to transfer. Must not be {@code null}
+     * @throws IllegalStateException if key was used for transfer with other parameters
+     * @throws InterruptedException  if the current thread was interrupted while waiting
+     * @throws ExecutionException    if the computation threw an exception
+     * @throws TimeoutException      if the wait timed out
+     */
+    public void transfer(String idempotencyKey, UUID fromId, UUID toId, BigDecimal amount) throws InterruptedException, ExecutionException, TimeoutException {
+        transfer(idempotencyKey, fromId, toId, amount, () -> {
+        });
+    }
+
+    /**
+     * <p>Transfer amount from transmitter to recipient at most once per idempotency key, admitting it first.</p>
+     * <p>Admission is run only when transfer is actually started, so repeated calls with a known key
+     * get outcome of the first call without being admitted again. Admission may reject transfer by throwing
+     * an unchecked exception, which is passed to the caller, and the key stays free then.</p>
+     *
+     * @param idempotencyKey idempotency key. In case of {@code null} value transfer is always performed
+     * @param fromId         transmitter id. Must not be {@code null}
+     * @param toId           recipient id. Must not be {@code null}
+     * @param amount         amount of money to transfer. Must not be {@code null}
+     * @param admission      admission of transfer, e.g. check of rate limits. Must not be {@code null}
+     * @throws IllegalStateException if key was used for transfer with other parameters
+     * @throws InterruptedException  if the current thread was interrupted while waiting
+     * @throws ExecutionException    if the computation threw an exception
+     * @throws TimeoutException      if the wait timed out
+     */
+    public void transfer(String idempotencyKey, UUID fromId, UUID toId, BigDecimal amount, Runnable admission) throws InterruptedException, ExecutionException, TimeoutException {
+        if (idempotencyKey == null) {
+            admission.run();
+            transfer(fromId, toId, amount);
+            return;
+        }
+
+        List<Object> fingerprint = Arrays.asList(fromId, toId, amount.stripTrailingZeros());
+        idempotencyCache.getOrStart(idempotencyKey, fingerprint, () -> {
+            admission.run();
+            return CompletableFuture.runAsync(new TransferTask(fromId, toId, amount), executorService);
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Hold amount on transmitter account for later transfer to recipient.</p>
+     * <p>Held amount is not available for transfers. Hold is either captured, transferring held amount or part of it
+     * to recipient with a single transaction, or released. Holds that are neither captured nor released
+     * are released when their time to live passes.</p>
+     *
+     * @param fromId     transmitter id. Must not be {@code null}
+     * @param toId       recipient id. Must not be {@code null}
+     * @param amount     amount of money to hold. Must not be {@code null}
+     * @param timeToLive time to live in milliseconds. In case of {@code null} value maximum time to live is used
+     * @return created {@link Hold}
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public Hold hold(UUID fromId, UUID toId, BigDecimal amount, Long timeToLive) throws InterruptedException, ExecutionException, TimeoutException {
+        startScheduler();
+        return executorService.submit(() -> {
+            UserAccount fromAccount = getExistingAccounts(fromId, toId)[0];
+
+            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Attempting to hold negative amount: " + amount);
+            }
+
+            long ttl = timeToLive != null ? timeToLive : maxHoldTimeToLive;
+            if (ttl <= 0 || ttl > maxHoldTimeToLive) {
+                throw new IllegalArgumentException("Time to live of hold is out of range: " + ttl);
+            }
+
+            if (!fromAccount.tryHold(amount)) {
+                logger.warn("Available balance of {} is {}, while attempting to hold {}",
+                        fromId, fromAccount.getAvailableBalance(), amount);
+                throw new IllegalArgumentException("Balance is too low");
+            }
+
+            Hold hold = new Hold(UUID.randomUUID(), fromId, toId, amount, System.currentTimeMillis() + ttl);
+            holds.put(hold.getId(), holdExpiry.schedule(hold, hold.getExpiresAt()));
+            return hold;
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get hold that is neither captured nor released yet.
+     *
+     * @param holdId hold id. Must not be {@code null}
+     * @return {@link Hold} if present. {@code null} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public Hold getHold(UUID holdId) throws InterruptedException, ExecutionException, TimeoutException {
+        return executorService.submit(() -> {
+            TimingWheel.Timeout<Hold> timeout = holds.get(holdId);
+            return timeout != null ? timeout.getItem() : null;
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Capture hold, transferring held amount or part of it to recipient. The rest of held amount is released.
+     *
+     * @param holdId hold id. Must not be {@code null}
+     * @param amount amount to transfer. In case of {@code null} value the whole held amount is transferred
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public void capture(UUID holdId, BigDecimal amount) throws InterruptedException, ExecutionException, TimeoutException {
+        executorService.submit(() -> {
+            Hold hold = getExistingHold(holdId);
+            BigDecimal captured = amount != null ? amount : hold.getAmount();
+
+            if (captured.compareTo(BigDecimal.ZERO) <= 0 || captured.compareTo(hold.getAmount()) > 0) {
+                throw new IllegalArgumentException("Captured amount " + captured
+                        + " is out of range of held amount " + hold.getAmount());
+            }
+
+            UserAccount[] accounts = getExistingAccounts(hold.getFrom(), hold.getTo());
+            if (accounts[0].getHeld().compareTo(hold.getAmount()) < 0) {
+                throw new IllegalArgumentException("Account of hold was replaced: " + hold.getFrom());
+            }
+
+            holds.remove(holdId).cancel();
+            accounts[0].releaseHold(hold.getAmount(), captured);
+            commit(accounts[0], accounts[1], captured);
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Release hold, so that held amount becomes available again.
+     *
+     * @param holdId hold id. Must not be {@code null}
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public void release(UUID holdId) throws InterruptedException, ExecutionException, TimeoutException {
+        executorService.submit(() -> {
+            Hold hold = getExistingHold(holdId);
+            holds.remove(holdId).cancel();
+            releaseHeldFunds(hold);
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Schedule transfer to be performed at given time.</p>
+     * <p>Transfers coming due within the same scheduler tick are performed together by a single task of the storage
+     * thread. Transfer is validated again when it is performed, failed transfers are logged and dropped.</p>
+     *
+     * @param fromId    transmitter id. Must not be {@code null}
+     * @param toId      recipient id. Must not be {@code null}
+     * @param amount    amount of money to transfer. Must not be {@code null}
+     * @param executeAt time in milliseconds when transfer is performed. Transfers scheduled in the past
+     *                  are performed on the next scheduler tick
+     * @return created {@link ScheduledTransfer}
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public ScheduledTransfer scheduleTransfer(UUID fromId, UUID toId, BigDecimal amount, long executeAt) throws InterruptedException, ExecutionException, TimeoutException {
+        startScheduler();
+        return executorService.submit(() -> {
+            getExistingAccounts(fromId, toId);
+
+            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Attempting to transfer negative amount: " + amount);
+            }
+
+            ScheduledTransfer transfer = new ScheduledTransfer(UUID.randomUUID(), fromId, toId, amount, executeAt);
+            scheduledTransfers.put(transfer.getId(), transferSchedule.schedule(transfer, executeAt));
+            return transfer;
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get scheduled transfer that is not performed yet.
+     *
+     * @param transferId scheduled transfer id. Must not be {@code null}
+     * @return {@link ScheduledTransfer} if present. {@code null} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public ScheduledTransfer getScheduledTransfer(UUID transferId) throws InterruptedException, ExecutionException, TimeoutException {
+        return executorService.submit(() -> {
+            TimingWheel.Timeout<ScheduledTransfer> timeout = scheduledTransfers.get(transferId);
+            return timeout != null ? timeout.getItem() : null;
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancel scheduled transfer that is not performed yet.
+     *
+     * @param transferId scheduled transfer id. Must not be {@code null}
+     * @return {@code true} if transfer was cancelled. {@code false} if it is not scheduled
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public boolean cancelScheduledTransfer(UUID transferId) throws InterruptedException, ExecutionException, TimeoutException {
+        return executorService.submit(() -> {
+            TimingWheel.Timeout<ScheduledTransfer> timeout = scheduledTransfers.remove(transferId);
+            return timeout != null && timeout.cancel();
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Get account with balance it had at passed time.</p>
+     * <p>Balance is initial balance of account plus amounts received minus amounts transmitted up to passed time,
+     * inclusive. Held funds are part of balance until captured. Account is assumed to hold its initial balance
+     * since the beginning of the ledger, and transactions of earlier accounts with the same id are not counted.</p>
+     *
+     * @param userId    user id. Must not be {@code null}
+     * @param timestamp time in milliseconds
+     * @return {@link UserAccount} with balance at passed time. {@code null} if account does not exist
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public UserAccount getAccountAsOf(UUID userId, long timestamp) throws InterruptedException, ExecutionException, TimeoutException {
+        return executorService.submit(() -> {
+            UserAccount account = accountStorage.getUserAccount(userId);
+            if (account == null) {
+                return null;
+            }
+            return new UserAccount(userId,
+                    account.getOpeningBalance().add(transactionStorage.getNetFlow(userId, account.getOpeningPosition(), timestamp)));
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get page of account history, newest transactions first.
+     *
+     * @param userId user id. Must not be {@code null}
+     * @param offset number of the newest transactions to skip. Must not be negative
+     * @param count  maximum number of transactions to return. Must not be negative
+     * @return {@link List} of transactions the account transmitted or received. {@code null} if account does not exist
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public List<TransferTransaction> getAccountHistory(UUID userId, int offset, int count) throws InterruptedException, ExecutionException, TimeoutException {
+        return executorService.submit(() -> accountStorage.getUserAccount(userId) == null ? null
+                : transactionStorage.getAccountHistory(userId, offset, count)
+        ).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * <p>Get list of transactions that match specific query parameters.</p>
      * <p>Following parameters are accepted:</p>
@@ -103,6 +515,169 @@ public class TransactionManager {
                 transactionStorage.getTransactions(queryParameters)).get(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Get list of transactions that match query.
+     * Concurrent requests with equal queries that are still waiting for the storage thread share one computation.
+     * Planning and reading share one timeout, and a parallel scan is cancelled once all requests sharing it
+     * have given up waiting.
+     *
+     * @param query query. Must not be {@code null}
+     * @return {@link List} of transactions that match passed query. The list may be shared and must not be modified
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public List<TransferTransaction> getTransactions(TransactionQuery query) throws InterruptedException, ExecutionException, TimeoutException {
+        return queryTransactions(query).getTransactions();
+    }
+
+    /**
+     * Get list of transactions that match query together with the plan that was executed to read them.
+     * Concurrent requests with equal queries that are still waiting for the storage thread share one computation.
+     * Planning and reading share one timeout, and a parallel scan is cancelled once all requests sharing it
+     * have given up waiting.
+     *
+     * @param query query. Must not be {@code null}
+     * @return {@link QueryResult} of passed query
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public QueryResult queryTransactions(TransactionQuery query) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        ForkJoinPool pool = scanPool;
+
+        // large scans are only planned by the storage thread and read by the scan pool
+        PlannedQuery planned = queryFlights.execute(query, executorService, () -> {
+            QueryPlan plan = transactionStorage.plan(query);
+            if (pool != null && plan.isScan() && plan.getEstimatedRows() >= parallelScanThreshold) {
+                return new PlannedQuery(plan, transactionStorage.scanInParallel(query, plan, pool));
+            }
+            return new PlannedQuery(plan, CompletableFuture.completedFuture(transactionStorage.getTransactions(query, plan)));
+        }).get(timeout, TimeUnit.MILLISECONDS);
+
+        if (!planned.join()) {
+            throw new TimeoutException("Scan was cancelled as other requests for it timed out");
+        }
+
+        List<TransferTransaction> transactions = null;
+        try {
+            transactions = planned.transactions.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return new QueryResult(planned.plan, transactions);
+        } finally {
+            planned.leave(transactions != null);
+        }
+    }
+
+    /**
+     * Subscribe to committed transactions.
+     *
+     * @param filter   filter of transactions to deliver. Must not be {@code null}
+     * @param position position of the first already committed transaction to deliver.
+     *                 In case of {@code null} value only transactions committed after subscription are delivered
+     * @param listener listener receiving transactions. Must not be {@code null}
+     * @return {@link TransactionFeed.Subscription}
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException   if the computation threw an exception
+     * @throws TimeoutException     if the wait timed out
+     */
+    public TransactionFeed.Subscription subscribe(Predicate<TransferTransaction> filter, Long position,
+                                                  TransactionFeed.TransactionListener listener)
+            throws InterruptedException, ExecutionException, TimeoutException {
+
+        return executorService.submit(() -> {
+            int size = transactionStorage.size();
+            int from = position != null ? (int) Math.min(Math.max(position, 0), size) : size;
+            return transactionFeed.subscribe(filter, transactionStorage.getTransactionLog(), from, listener);
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private Hold getExistingHold(UUID holdId) {
+        TimingWheel.Timeout<Hold> timeout = holds.get(holdId);
+        if (timeout == null) {
+            logger.warn("Hold with following id does not exist: {}", holdId);
+            throw new IllegalArgumentException("Hold with following id does not exist: " + holdId);
+        }
+        return timeout.getItem();
+    }
+
+    private void releaseHeldFunds(Hold hold) {
+        UserAccount account = accountStorage.getUserAccount(hold.getFrom());
+        // funds held on deleted or replaced account are gone with it
+        if (account != null && account.getHeld().compareTo(hold.getAmount()) >= 0) {
+            account.releaseHold(hold.getAmount(), BigDecimal.ZERO);
+        }
+    }
+
+    private synchronized void startScheduler() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // wheels are turned by the storage thread, so due items are handled in order with other changes
+        scheduler.scheduleWithFixedDelay(() -> executorService.execute(this::onTick),
+                SCHEDULER_TICK, SCHEDULER_TICK, TimeUnit.MILLISECONDS);
+    }
+
+    private void onTick() {
+        long now = System.currentTimeMillis();
+
+        holdExpiry.advance(now, hold -> {
+            holds.remove(hold.getId());
+            releaseHeldFunds(hold);
+            logger.info("Hold {} of {} on account {} expired", hold.getId(), hold.getAmount(), hold.getFrom());
+        });
+
+        // all transfers that came due are performed as one batch within this task
+        transferSchedule.advance(now, transfer -> {
+            scheduledTransfers.remove(transfer.getId());
+            try {
+                new TransferTask(transfer.getFrom(), transfer.getTo(), transfer.getAmount()).run();
+            } catch (IllegalArgumentException e) {
+                logger.warn("Scheduled transfer {} failed: {}", transfer.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private UserAccount[] getExistingAccounts(UUID fromId, UUID toId) {
+        UserAccount fromAccount = accountStorage.getUserAccount(fromId);
+        UserAccount toAccount = accountStorage.getUserAccount(toId);
+
+        if (fromAccount == null || toAccount == null) {
+            StringJoiner joiner = new StringJoiner(",", "Users with following ids do not exist: ", "");
+
+            if (fromAccount == null) {
+                joiner.add(fromId.toString());
+                logger.warn("Account with following id does not exist: {}", fromId);
+            }
+
+            if (toAccount == null) {
+                joiner.add(toId.toString());
+                logger.warn("Account with following id does not exist: {}", toId);
+            }
+
+            throw new IllegalArgumentException(joiner.toString());
+        }
+
+        return new UserAccount[]{fromAccount, toAccount};
+    }
+
+    private void commit(UserAccount fromAccount, UserAccount toAccount, BigDecimal amount) {
+        TransferTransaction transaction = new TransferTransaction(
+                fromAccount.getUserId(), toAccount.getUserId(), amount, System.currentTimeMillis());
+        int position = transactionStorage.addTransaction(transaction);
+        toAccount.acquire(amount);
+
+        if (position >= 0) {
+            transactionFeed.publish(position, transaction);
+        }
+    }
+
     private class TransferTask implements Runnable {
 
         private UUID fromId;
@@ -119,40 +694,50 @@ public class TransactionManager {
 
         @Override
         public void run() {
-            UserAccount fromAccount = accountStorage.getUserAccount(fromId);
-            UserAccount toAccount = accountStorage.getUserAccount(toId);
-
-            if (fromAccount == null || toAccount == null) {
-                StringJoiner joiner = new StringJoiner(",", "Users with following ids do not exist: ", "");
-
-                if (fromAccount == null) {
-                    joiner.add(fromId.toString());
-                    logger.warn("Account with following id does not exist: {}", fromId);
-                }
-
-                if (toAccount == null) {
-                    joiner.add(toId.toString());
-                    logger.warn("Account with following id does not exist: {}", toId);
-                }
-
-                throw new IllegalArgumentException(joiner.toString());
-            }
+            UserAccount[] accounts = getExistingAccounts(fromId, toId);
+            UserAccount fromAccount = accounts[0];
+            UserAccount toAccount = accounts[1];
 
             if (amount.compareTo(BigDecimal.ZERO) <= 0) {
                 logger.warn("Attempting to transfer negative amount: {}", amount);
                 throw new IllegalArgumentException("Attempting to transfer negative amount: " + amount);
             }
 
-            if (fromAccount.getBalance().compareTo(amount) < 0) {
+            if (fromAccount.getAvailableBalance().compareTo(amount) < 0) {
                 logger.warn(
-                        "Balance of {} is {}, while attempting to transfer {}", fromId, fromAccount.getBalance(), amount);
+                        "Available balance of {} is {}, while attempting to transfer {}",
+                        fromId, fromAccount.getAvailableBalance(), amount);
                 throw new IllegalArgumentException("Balance is too low");
             }
 
-            TransferTransaction transaction = new TransferTransaction(fromId, toId, amount, System.currentTimeMillis());
-            transactionStorage.addTransaction(transaction);
             fromAccount.withdraw(amount);
-            toAccount.acquire(amount);
+            commit(fromAccount, toAccount, amount);
+        }
+    }
+
+    private static class PlannedQuery {
+
+        private final QueryPlan plan;
+
+        private final Future<List<TransferTransaction>> transactions;
+
+        // number of requests waiting for transactions, -1 once they are cancelled
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        PlannedQuery(QueryPlan plan, Future<List<TransferTransaction>> transactions) {
+            this.plan = plan;
+            this.transactions = transactions;
+        }
+
+        boolean join() {
+            return waiters.getAndUpdate(count -> count < 0 ? count : count + 1) >= 0;
+        }
+
+        void leave(boolean done) {
+            // the last request giving up cancels reading, nobody else is going to use the result
+            if (waiters.updateAndGet(count -> count == 1 && !done ? -1 : count - 1) < 0) {
+                transactions.cancel(true);
+            }
         }
     }
 }
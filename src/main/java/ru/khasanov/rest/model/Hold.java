@@ -0,0 +1,99 @@
+package ru.khasanov.rest.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Class representing funds reserved on transmitter account for later transfer to recipient.
+ *
+ * @author Aleksandr Khasanov
+ */
+@XmlRootElement
+public class Hold {
+
+    @XmlElement
+    private UUID id;
+
+    @XmlElement
+    private UUID from;
+
+    @XmlElement
+    private UUID to;
+
+    @XmlElement
+    private BigDecimal amount;
+
+    @XmlElement
+    private long expiresAt;
+
+    /**
+     * Creates new instance of {@link Hold}
+     * This required for JAXB and should not be used to to create instances of {@link Hold}.
+     */
+    public Hold() {
+    }
+
+    /**
+     * Creates new instance of {@link Hold}.
+     *
+     * @param id        hold id
+     * @param from      transmitter id
+     * @param to        recipient id
+     * @param amount    reserved amount
+     * @param expiresAt time in milliseconds when hold is released unless captured
+     */
+    public Hold(UUID id, UUID from, UUID to, BigDecimal amount, long expiresAt) {
+        this.id = id;
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Get hold id.
+     *
+     * @return hold id
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Get transmitter id.
+     *
+     * @return transmitter id
+     */
+    public UUID getFrom() {
+        return from;
+    }
+
+    /**
+     * Get recipient id.
+     *
+     * @return recipient id
+     */
+    public UUID getTo() {
+        return to;
+    }
+
+    /**
+     * Get reserved amount.
+     *
+     * @return reserved amount
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * Get time when hold is released unless captured.
+     *
+     * @return time in milliseconds
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.khasanov.rest.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Class representing result of ledger reconciliation.
+ *
+ * @author Aleksandr Khasanov
+ */
+@XmlRootElement
+public class ReconciliationReport {
+
+    @XmlElement
+    private long timestamp;
+
+    @XmlElement
+    private long transactions;
+
+    @XmlElement
+    private long accounts;
+
+    @XmlElement
+    private long durationMillis;
+
+    @XmlElement
+    private List<Discrepancy> discrepancies;
+
+    /**
+     * Creates new instance of {@link ReconciliationReport}
+     * This required for JAXB and should not be used to to create instances of {@link ReconciliationReport}.
+     */
+    public ReconciliationReport() {
+    }
+
+    /**
+     * Creates new instance of {@link ReconciliationReport}.
+     *
+     * @param timestamp      time in milliseconds when ledger snapshot was taken
+     * @param transactions   number of replayed transactions
+     * @param accounts       number of checked accounts
+     * @param durationMillis duration of reconciliation in milliseconds
+     * @param discrepancies  accounts which balances do not match the ledger
+     */
+    public ReconciliationReport(long timestamp, long transactions, long accounts, long durationMillis,
+                                List<Discrepancy> discrepancies) {
+        this.timestamp = timestamp;
+        this.transactions = transactions;
+        this.accounts = accounts;
+        this.durationMillis = durationMillis;
+        this.discrepancies = discrepancies;
+    }
+
+    /**
+     * Get time when ledger snapshot was taken.
+     *
+     * @return time in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get number of replayed transactions.
+     *
+     * @return number of transactions
+     */
+    public long getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Get number of checked accounts.
+     *
+     * @return number of accounts
+     */
+    public long getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Get duration of reconciliation.
+     *
+     * @return duration in milliseconds
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Get accounts which balances do not match the ledger.
+     *
+     * @return {@link List} of discrepancies
+     */
+    public List<Discrepancy> getDiscrepancies() {
+        return discrepancies;
+    }
+
+    /**
+     * Account which balance does not match its initial balance and its transactions.
+     */
+    public static class Discrepancy {
+
+        @XmlElement
+        private UUID userId;
+
+        @XmlElement
+        private BigDecimal openingBalance;
+
+        @XmlElement
+        private BigDecimal netFlow;
+
+        @XmlElement
+        private BigDecimal balance;
+
+        /**
+         * Creates new instance of {@link Discrepancy}
+         * This required for JAXB and should not be used to to create instances of {@link Discrepancy}.
+         */
+        public Discrepancy() {
+        }
+
+        /**
+         * Creates new instance of {@link Discrepancy}.
+         *
+         * @param userId         user id
+         * @param openingBalance initial balance of account
+         * @param netFlow        received amount minus transmitted amount according to the ledger
+         * @param balance        actual balance of account
+         */
+        public Discrepancy(UUID userId, BigDecimal openingBalance, BigDecimal netFlow, BigDecimal balance) {
+            this.userId = userId;
+            this.openingBalance = openingBalance;
+            this.netFlow = netFlow;
+            this.balance = balance;
+        }
+
+        /**
+         * Get user id.
+         *
+         * @return user id
+         */
+        public UUID getUserId() {
+            return userId;
+        }
+
+        /**
+         * Get initial balance of account.
+         *
+         * @return initial balance
+         */
+        public BigDecimal getOpeningBalance() {
+            return openingBalance;
+        }
+
+        /**
+         * Get received amount minus transmitted amount according to the ledger.
+         *
+         * @return net flow
+         */
+        public BigDecimal getNetFlow() {
+            return netFlow;
+        }
+
+        /**
+         * Get actual balance of account.
+         *
+         * @return balance
+         */
+        public BigDecimal getBalance() {
+            return balance;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.khasanov.rest.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Class representing transfer that is performed at given time.
+ *
+ * @author Aleksandr Khasanov
+ */
+@XmlRootElement
+public class ScheduledTransfer {
+
+    @XmlElement
+    private UUID id;
+
+    @XmlElement
+    private UUID from;
+
+    @XmlElement
+    private UUID to;
+
+    @XmlElement
+    private BigDecimal amount;
+
+    @XmlElement
+    private long executeAt;
+
+    /**
+     * Creates new instance of {@link ScheduledTransfer}
+     * This required for JAXB and should not be used to to create instances of {@link ScheduledTransfer}.
+     */
+    public ScheduledTransfer() {
+    }
+
+    /**
+     * Creates new instance of {@link ScheduledTransfer}.
+     *
+     * @param id        scheduled transfer id
+     * @param from      transmitter id
+     * @param to        recipient id
+     * @param amount    transfer amount
+     * @param executeAt time in milliseconds when transfer is performed
+     */
+    public ScheduledTransfer(UUID id, UUID from, UUID to, BigDecimal amount, long executeAt) {
+        this.id = id;
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+        this.executeAt = executeAt;
+    }
+
+    /**
+     * Get scheduled transfer id.
+     *
+     * @return scheduled transfer id
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Get transmitter id.
+     *
+     * @return transmitter id
+     */
+    public UUID getFrom() {
+        return from;
+    }
+
+    /**
+     * Get recipient id.
+     *
+     * @return recipient id
+     */
+    public UUID getTo() {
+        return to;
+    }
+
+    /**
+     * Get transfer amount.
+     *
+     * @return transfer amount
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * Get time when transfer is performed.
+     *
+     * @return time in milliseconds
+     */
+    public long getExecuteAt() {
+        return executeAt;
+    }
+}
@@ -2,6 +2,7 @@ package ru.khasanov.rest.model;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import java.math.BigDecimal;
 import java.util.UUID;
 
@@ -25,6 +26,10 @@ public class TransferTransaction {
     @XmlElement
     private long timestamp;
 
+    // JSON encoding of the transaction, kept when transactions are written in pre-serialized JSON mode
+    @XmlTransient
+    private volatile byte[] json;
+
     /**
      * Creates new instance of {@link TransferTransaction}
      * This required for JAXB and should not be used to to create instances of {@link TransferTransaction}.
@@ -83,6 +88,25 @@ public class TransferTransaction {
         return timestamp;
     }
 
+    /**
+     * Get kept JSON encoding of the transaction.
+     *
+     * @return JSON encoding. {@code null} if encoding was not kept
+     */
+    @XmlTransient
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * Keep JSON encoding of the transaction. Transaction must not be changed afterwards.
+     *
+     * @param json JSON encoding
+     */
+    public void setJson(byte[] json) {
+        this.json = json;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -2,8 +2,10 @@ package ru.khasanov.rest.model;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import java.math.BigDecimal;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class representing user account.
@@ -13,18 +15,33 @@ import java.util.UUID;
 @XmlRootElement
 public class UserAccount {
 
+    private static final AtomicLong VERSION_SEQUENCE = new AtomicLong();
+
     @XmlElement
     private UUID userId;
 
+    // funds that are not held
     @XmlElement
     private BigDecimal balance;
 
+    private volatile BigDecimal held = BigDecimal.ZERO;
+
+    private BigDecimal openingBalance;
+
+    // position in the ledger at which account was created
+    private int openingPosition;
+
+    private volatile long version = VERSION_SEQUENCE.incrementAndGet();
+
+    private volatile BalanceListener balanceListener;
+
     /**
      * Creates new instance of {@link UserAccount}.
      */
     public UserAccount() {
         userId = UUID.randomUUID();
         balance = BigDecimal.ZERO;
+        openingBalance = BigDecimal.ZERO;
     }
 
     /**
@@ -36,6 +53,7 @@ public class UserAccount {
     public UserAccount(UUID userId, BigDecimal balance) {
         this.userId = userId;
         this.balance = balance;
+        this.openingBalance = balance;
     }
 
     /**
@@ -48,14 +66,88 @@ public class UserAccount {
     }
 
     /**
-     * Get user balance.
+     * Get user balance. Balance includes held funds.
      *
      * @return user balance
      */
     public BigDecimal getBalance() {
+        BigDecimal available = getAvailableBalance();
+        BigDecimal currentHeld = held;
+        return currentHeld.signum() == 0 ? available : available.add(currentHeld);
+    }
+
+    /**
+     * Get part of balance that is not held.
+     *
+     * @return available balance
+     */
+    @XmlTransient
+    public BigDecimal getAvailableBalance() {
         return balance;
     }
 
+    /**
+     * Get balance account was created with.
+     *
+     * @return initial balance
+     */
+    @XmlTransient
+    public BigDecimal getOpeningBalance() {
+        return openingBalance;
+    }
+
+    /**
+     * Get position in the ledger at which account was created. Transactions at lower positions belong to
+     * earlier accounts with the same id.
+     *
+     * @return opening position
+     */
+    @XmlTransient
+    public int getOpeningPosition() {
+        return openingPosition;
+    }
+
+    /**
+     * Set up position in the ledger at which account was created.
+     *
+     * @param openingPosition opening position. Must not be negative
+     */
+    @XmlTransient
+    public void setOpeningPosition(int openingPosition) {
+        this.openingPosition = openingPosition;
+    }
+
+    /**
+     * Get held part of balance.
+     *
+     * @return held funds
+     */
+    @XmlTransient
+    public BigDecimal getHeld() {
+        return held;
+    }
+
+    /**
+     * Get account version. Version changes every time balance changes
+     * and is never shared by different accounts, even by accounts with the same id.
+     *
+     * @return account version
+     */
+    @XmlTransient
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set up listener notified about balance changes.
+     *
+     * @param balanceListener {@link BalanceListener}. In case of {@code null} value nobody is notified
+     */
+    @XmlTransient
+    public void setBalanceListener(BalanceListener balanceListener) {
+        this.balanceListener = balanceListener;
+    }
+
     /**
      * Withdraws passed amount from user balance.
      *
@@ -67,7 +159,56 @@ public class UserAccount {
             throw new IllegalArgumentException("Attempting to withdraw negative amount: " + amount);
         }
 
+        BigDecimal oldBalance = getBalance();
+        balance = balance.subtract(amount);
+        version = VERSION_SEQUENCE.incrementAndGet();
+        notifyBalanceChanged(oldBalance);
+    }
+
+    /**
+     * Hold passed amount if available balance is not less than amount. Held funds can not be withdrawn.
+     * Must not be called concurrently with other changes of held funds.
+     *
+     * @param amount amount to be held, must not be {@code null}
+     * @return {@code true} if amount was held. {@code false} if available balance is too low
+     */
+    public boolean tryHold(BigDecimal amount) {
+
+        if (amount.compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalArgumentException("Attempting to hold negative amount: " + amount);
+        }
+
+        if (balance.compareTo(amount) < 0) {
+            return false;
+        }
         balance = balance.subtract(amount);
+        held = held.add(amount);
+        version = VERSION_SEQUENCE.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Release held amount, withdrawing part of it. The rest becomes available again.
+     * Must not be called concurrently with other changes of held funds.
+     *
+     * @param amount    held amount to be released, must not be {@code null}
+     * @param withdrawn part of released amount to be withdrawn, must not be {@code null}
+     */
+    public void releaseHold(BigDecimal amount, BigDecimal withdrawn) {
+
+        if (withdrawn.compareTo(BigDecimal.ZERO) < 0 || withdrawn.compareTo(amount) > 0 || amount.compareTo(held) > 0) {
+            throw new IllegalArgumentException("Attempting to release " + amount + " withdrawing " + withdrawn
+                    + " while " + held + " is held");
+        }
+
+        BigDecimal oldBalance = getBalance();
+        held = held.subtract(amount);
+        BigDecimal returned = amount.subtract(withdrawn);
+        balance = balance.add(returned);
+        version = VERSION_SEQUENCE.incrementAndGet();
+        if (withdrawn.signum() != 0) {
+            notifyBalanceChanged(oldBalance);
+        }
     }
 
     /**
@@ -81,7 +222,17 @@ public class UserAccount {
             throw new IllegalArgumentException("Attempting to acquire negative amount: " + amount);
         }
 
+        BigDecimal oldBalance = getBalance();
         balance = balance.add(amount);
+        version = VERSION_SEQUENCE.incrementAndGet();
+        notifyBalanceChanged(oldBalance);
+    }
+
+    private void notifyBalanceChanged(BigDecimal oldBalance) {
+        BalanceListener listener = balanceListener;
+        if (listener != null) {
+            listener.onBalanceChanged(this, oldBalance, getBalance());
+        }
     }
 
     @Override
@@ -104,4 +255,19 @@ public class UserAccount {
     public int hashCode() {
         return userId.hashCode();
     }
-}
\ No newline at end of file
+
+    /**
+     * Listener of account balance changes.
+     */
+    public interface BalanceListener {
+
+        /**
+         * Called after balance of account has changed.
+         *
+         * @param account    account. Must not be {@code null}
+         * @param oldBalance balance before change. Must not be {@code null}
+         * @param newBalance balance after change. Must not be {@code null}
+         */
+        void onBalanceChanged(UserAccount account, BigDecimal oldBalance, BigDecimal newBalance);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.khasanov.rest.provider;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Compact binary media type for accounts and transactions.
+ * <p>All values are written in big-endian byte order:</p>
+ * <ul>
+ * <li>id - 16 bytes, most significant bits of {@link java.util.UUID} followed by least significant bits.</li>
+ * <li>amount - 9 bytes, unscaled value as {@code long} followed by scale as {@code byte}.</li>
+ * <li>timestamp - 8 bytes, {@code long}.</li>
+ * </ul>
+ * <p>User account is written as id and balance, transaction as sender id, recipient id, amount and timestamp.
+ * List is written as {@code int} number of elements followed by elements.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public final class BinaryMediaType {
+
+    public static final String APPLICATION_BINARY = "application/vnd.khasanov.binary";
+
+    public static final MediaType APPLICATION_BINARY_TYPE = MediaType.valueOf(APPLICATION_BINARY);
+
+    private BinaryMediaType() {
+    }
+}
@@ -0,0 +1,196 @@
+package ru.khasanov.rest.provider;
+
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reader and writer of {@link UserAccount}, {@link TransferTransaction} and their lists
+ * in {@link BinaryMediaType#APPLICATION_BINARY} format.
+ * Lists of more than {@value #MAX_RECORDS} records, lists longer than the entity can hold and truncated entities
+ * are rejected with {@code 400 Bad Request}.
+ *
+ * @author Aleksandr Khasanov
+ */
+@Provider
+@Produces(BinaryMediaType.APPLICATION_BINARY)
+@Consumes(BinaryMediaType.APPLICATION_BINARY)
+public class BinaryMessageBodyProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int MAX_RECORDS = 100_000;
+
+    private static final int ID_SIZE = 2 * Long.BYTES;
+
+    private static final int AMOUNT_SIZE = Long.BYTES + Byte.BYTES;
+
+    private static final int ACCOUNT_SIZE = ID_SIZE + AMOUNT_SIZE;
+
+    private static final int TRANSACTION_SIZE = 2 * ID_SIZE + AMOUNT_SIZE + Long.BYTES;
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isRecord(type) || List.class.equals(type) && isRecord(getElementType(genericType));
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+            throws IOException, WebApplicationException {
+
+        DataInputStream input = new DataInputStream(entityStream);
+
+        try {
+            if (isRecord(type)) {
+                return readRecord(type, input);
+            }
+
+            Class<?> elementType = getElementType(genericType);
+            int size = input.readInt();
+            checkSize(size, UserAccount.class.equals(elementType) ? ACCOUNT_SIZE : TRANSACTION_SIZE, httpHeaders);
+
+            List<Object> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(readRecord(elementType, input));
+            }
+            return result;
+        } catch (EOFException e) {
+            throw new BadRequestException("Binary entity is truncated");
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isRecord(type) || Collection.class.isAssignableFrom(type) && isRecord(getElementType(genericType));
+    }
+
+    @Override
+    public long getSize(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(entityStream, BUFFER_SIZE));
+
+        if (o instanceof Collection) {
+            Collection<?> records = (Collection<?>) o;
+            output.writeInt(records.size());
+            for (Object record : records) {
+                writeRecord(record, output);
+            }
+        } else {
+            writeRecord(o, output);
+        }
+
+        output.flush();
+    }
+
+    private static void checkSize(int size, int recordSize, MultivaluedMap<String, String> httpHeaders) {
+        if (size < 0 || size > MAX_RECORDS) {
+            throw new BadRequestException("Invalid number of records: " + size);
+        }
+
+        String contentLength = httpHeaders.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                if ((long) size * recordSize > Long.parseLong(contentLength) - Integer.BYTES) {
+                    throw new BadRequestException("Number of records exceeds entity size: " + size);
+                }
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid content length: " + contentLength);
+            }
+        }
+    }
+
+    private static boolean isRecord(Class<?> type) {
+        return UserAccount.class.equals(type) || TransferTransaction.class.equals(type);
+    }
+
+    private static Class<?> getElementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class) {
+                return (Class<?>) arguments[0];
+            }
+        }
+        return null;
+    }
+
+    private static Object readRecord(Class<?> type, DataInputStream input) throws IOException {
+        if (UserAccount.class.equals(type)) {
+            return new UserAccount(readId(input), readAmount(input));
+        }
+        return new TransferTransaction(readId(input), readId(input), readAmount(input), input.readLong());
+    }
+
+    private static void writeRecord(Object record, DataOutputStream output) throws IOException {
+        if (record instanceof UserAccount) {
+            UserAccount account = (UserAccount) record;
+            writeId(account.getUserId(), output);
+            writeAmount(account.getBalance(), output);
+        } else {
+            TransferTransaction transaction = (TransferTransaction) record;
+            writeId(transaction.getFrom(), output);
+            writeId(transaction.getTo(), output);
+            writeAmount(transaction.getAmount(), output);
+            output.writeLong(transaction.getTimestamp());
+        }
+    }
+
+    private static UUID readId(DataInputStream input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    private static void writeId(UUID id, DataOutputStream output) throws IOException {
+        output.writeLong(id.getMostSignificantBits());
+        output.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static BigDecimal readAmount(DataInputStream input) throws IOException {
+        long unscaledValue = input.readLong();
+        return BigDecimal.valueOf(unscaledValue, input.readByte());
+    }
+
+    private static void writeAmount(BigDecimal amount, DataOutputStream output) throws IOException {
+        BigInteger unscaledValue = amount.unscaledValue();
+        int scale = amount.scale();
+
+        if (unscaledValue.bitLength() > Long.SIZE - 1 || scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IOException("Amount can not be written in binary format: " + amount);
+        }
+
+        output.writeLong(unscaledValue.longValue());
+        output.writeByte(scale);
+    }
+}
@@ -0,0 +1,336 @@
+package ru.khasanov.rest.provider;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Compresses response bodies with encoding accepted by client.</p>
+ * <p>Bodies smaller than minimum size and bodies of media types that are not compressible are sent as is.
+ * Compressed bodies of responses that may be cached by clients ({@code Cache-Control} with positive
+ * {@code max-age}) are kept in {@link ResponseCache}, so identical responses are not compressed again.
+ * Bodies are kept by entity tag of response as well, so a changed resource is never served from a body
+ * compressed before the change.</p>
+ * <p>Entity tag of compressed response gets suffix of its encoding, so it differs from tag of identity
+ * response. The suffix is stripped from tags in {@code If-None-Match} header before resources compare them,
+ * and put back on tag of {@code 304 Not Modified} response.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class CompressionInterceptor implements WriterInterceptor, ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String GZIP = "gzip";
+
+    public static final String DEFLATE = "deflate";
+
+    private static final int DEFAULT_MIN_SIZE = 1024;
+
+    private static final Pattern ENCODED_TAG = Pattern.compile("-(gz|df)\"");
+
+    private static final String TAG_SUFFIX_PROPERTY = CompressionInterceptor.class.getName() + ".tagSuffix";
+
+    private final ResponseCache cache;
+
+    private List<String> encodings = Arrays.asList(GZIP, DEFLATE);
+
+    private List<MediaType> mediaTypes = Arrays.asList(
+            MediaType.APPLICATION_JSON_TYPE, BinaryMediaType.APPLICATION_BINARY_TYPE);
+
+    private int minSize = DEFAULT_MIN_SIZE;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
+    @Context
+    private UriInfo uriInfo;
+
+    /**
+     * Creates new instance of {@link CompressionInterceptor}.
+     *
+     * @param cache cache of compressed bodies. Must not be {@code null}
+     */
+    public CompressionInterceptor(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Set up supported encodings in order of preference.
+     *
+     * @param encodings supported encodings. Encodings other than {@link #GZIP} and {@link #DEFLATE} are ignored.
+     *                  Must not be {@code null}
+     */
+    public void setEncodings(List<String> encodings) {
+        List<String> supported = new ArrayList<>();
+        for (String encoding : encodings) {
+            if (GZIP.equals(encoding) || DEFLATE.equals(encoding)) {
+                supported.add(encoding);
+            }
+        }
+        this.encodings = supported;
+    }
+
+    /**
+     * Set up compressible media types.
+     *
+     * @param mediaTypes compressible media types. Must not be {@code null}
+     */
+    public void setMediaTypes(List<MediaType> mediaTypes) {
+        this.mediaTypes = new ArrayList<>(mediaTypes);
+    }
+
+    /**
+     * Set up minimum size of compressed body.
+     *
+     * @param minSize minimum size of compressed body in bytes
+     */
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        List<String> ifNoneMatch = requestContext.getHeaders().get(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return;
+        }
+
+        for (ListIterator<String> iterator = ifNoneMatch.listIterator(); iterator.hasNext(); ) {
+            Matcher matcher = ENCODED_TAG.matcher(iterator.next());
+            if (matcher.find()) {
+                requestContext.setProperty(TAG_SUFFIX_PROPERTY, "-" + matcher.group(1));
+                iterator.set(matcher.replaceAll("\""));
+            }
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object suffix = requestContext.getProperty(TAG_SUFFIX_PROPERTY);
+        if (suffix != null && responseContext.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            tag(responseContext.getHeaders(), suffix.toString());
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+
+        if (!isCompressible(context.getMediaType()) || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        String encoding = selectEncoding();
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream outputStream = context.getOutputStream();
+
+        if (!isCacheable(headers)) {
+            ThresholdOutputStream thresholdOutputStream = new ThresholdOutputStream(outputStream, encoding, headers);
+            context.setOutputStream(thresholdOutputStream);
+            context.proceed();
+            thresholdOutputStream.finish();
+            return;
+        }
+
+        String key = encoding + " " + context.getMediaType() + " " + headers.getFirst(HttpHeaders.ETAG)
+                + " " + uriInfo.getRequestUri();
+        byte[] compressed = cache.get(key);
+
+        if (compressed == null) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            context.setOutputStream(body);
+            context.proceed();
+
+            if (body.size() < minSize) {
+                body.writeTo(outputStream);
+                return;
+            }
+
+            compressed = compress(body.toByteArray(), encoding);
+            cache.put(key, compressed);
+        }
+
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        tag(headers, tagSuffix(encoding));
+        outputStream.write(compressed);
+    }
+
+    private boolean isCompressible(MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+
+        for (MediaType compressible : mediaTypes) {
+            if (compressible.isCompatible(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String selectEncoding() {
+        List<String> acceptEncodingHeaders = httpHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncodingHeaders == null) {
+            return null;
+        }
+
+        List<String> accepted = new ArrayList<>();
+        for (String header : acceptEncodingHeaders) {
+            for (String token : header.split(",")) {
+                String[] parts = token.trim().split(";");
+                if (parts.length > 1 && parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?")) {
+                    continue;
+                }
+                accepted.add(parts[0].trim().toLowerCase());
+            }
+        }
+
+        for (String encoding : encodings) {
+            if (accepted.contains(encoding)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCacheable(MultivaluedMap<String, Object> headers) {
+        Object header = headers.getFirst(HttpHeaders.CACHE_CONTROL);
+        if (header == null) {
+            return false;
+        }
+
+        CacheControl cacheControl = header instanceof CacheControl
+                ? (CacheControl) header : CacheControl.valueOf(header.toString());
+
+        return cacheControl.getMaxAge() > 0 && !cacheControl.isPrivate() && !cacheControl.isNoStore();
+    }
+
+    private static String tagSuffix(String encoding) {
+        return GZIP.equals(encoding) ? "-gz" : "-df";
+    }
+
+    private static void tag(MultivaluedMap<String, Object> headers, String suffix) {
+        Object header = headers.getFirst(HttpHeaders.ETAG);
+        if (header == null) {
+            return;
+        }
+
+        EntityTag tag = header instanceof EntityTag ? (EntityTag) header : EntityTag.valueOf(header.toString());
+        headers.putSingle(HttpHeaders.ETAG, new EntityTag(tag.getValue() + suffix, tag.isWeak()));
+    }
+
+    private static DeflaterOutputStream createCompressor(OutputStream outputStream, String encoding) throws IOException {
+        return GZIP.equals(encoding) ? new GZIPOutputStream(outputStream) : new DeflaterOutputStream(outputStream);
+    }
+
+    private static byte[] compress(byte[] body, String encoding) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (OutputStream compressor = createCompressor(compressed, encoding)) {
+            compressor.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Stream that buffers body until it reaches minimum size and compresses it afterwards.
+     */
+    private class ThresholdOutputStream extends OutputStream {
+
+        private final OutputStream outputStream;
+
+        private final String encoding;
+
+        private final MultivaluedMap<String, Object> headers;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private DeflaterOutputStream compressor;
+
+        private boolean finished;
+
+        ThresholdOutputStream(OutputStream outputStream, String encoding, MultivaluedMap<String, Object> headers) {
+            this.outputStream = outputStream;
+            this.encoding = encoding;
+            this.headers = headers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (compressor != null) {
+                compressor.write(b, off, len);
+                return;
+            }
+
+            buffer.write(b, off, len);
+
+            if (buffer.size() >= minSize) {
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+                headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+                tag(headers, tagSuffix(encoding));
+                compressor = createCompressor(outputStream, encoding);
+                buffer.writeTo(compressor);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (compressor != null) {
+                compressor.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+
+            if (compressor != null) {
+                compressor.finish();
+            } else {
+                buffer.writeTo(outputStream);
+            }
+        }
+    }
+}
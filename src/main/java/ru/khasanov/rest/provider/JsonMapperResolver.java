@@ -0,0 +1,42 @@
+package ru.khasanov.rest.provider;
+
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Provides {@link ObjectMapper} used by JSON readers and writers. Model classes are handled by
+ * {@link ModelJsonModule}, other classes are handled as by default mapper.
+ *
+ * @author Aleksandr Khasanov
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class JsonMapperResolver implements ContextResolver<ObjectMapper> {
+
+    private final ObjectMapper mapper = createMapper();
+
+    /**
+     * Create mapper with the same annotation handling as default mapper and with {@link ModelJsonModule}.
+     *
+     * @return new {@link ObjectMapper}
+     */
+    public static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setAnnotationIntrospector(AnnotationIntrospector.pair(
+                new JacksonAnnotationIntrospector(), new JaxbAnnotationIntrospector(mapper.getTypeFactory())));
+        mapper.registerModule(new ModelJsonModule());
+        return mapper;
+    }
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return mapper;
+    }
+}
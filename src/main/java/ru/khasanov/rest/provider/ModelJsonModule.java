@@ -0,0 +1,238 @@
+package ru.khasanov.rest.provider;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * <p>Jackson module with serializers and deserializers of {@link UserAccount} and {@link TransferTransaction}.</p>
+ * <p>Fields are written and read directly instead of through reflection over JAXB annotations.
+ * JSON representation is the same: fields with {@code null} values are omitted
+ * and unknown fields are handled according to deserialization features of the mapper.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class ModelJsonModule extends SimpleModule {
+
+    private static final SerializedString USER_ID = new SerializedString("userId");
+
+    private static final SerializedString BALANCE = new SerializedString("balance");
+
+    private static final SerializedString FROM = new SerializedString("from");
+
+    private static final SerializedString TO = new SerializedString("to");
+
+    private static final SerializedString AMOUNT = new SerializedString("amount");
+
+    private static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+
+    /**
+     * Creates new instance of {@link ModelJsonModule}.
+     */
+    public ModelJsonModule() {
+        super(ModelJsonModule.class.getSimpleName());
+
+        addSerializer(UserAccount.class, new UserAccountSerializer());
+        addDeserializer(UserAccount.class, new UserAccountDeserializer());
+        addSerializer(TransferTransaction.class, new TransferTransactionSerializer());
+        addDeserializer(TransferTransaction.class, new TransferTransactionDeserializer());
+    }
+
+    private static class UserAccountSerializer extends StdSerializer<UserAccount> {
+
+        UserAccountSerializer() {
+            super(UserAccount.class);
+        }
+
+        @Override
+        public void serialize(UserAccount account, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+
+            generator.writeStartObject();
+            writeUuid(generator, USER_ID, account.getUserId());
+            writeDecimal(generator, BALANCE, account.getBalance());
+            generator.writeEndObject();
+        }
+    }
+
+    private static class TransferTransactionSerializer extends StdSerializer<TransferTransaction> {
+
+        TransferTransactionSerializer() {
+            super(TransferTransaction.class);
+        }
+
+        @Override
+        public void serialize(TransferTransaction transaction, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+
+            generator.writeStartObject();
+            writeUuid(generator, FROM, transaction.getFrom());
+            writeUuid(generator, TO, transaction.getTo());
+            writeDecimal(generator, AMOUNT, transaction.getAmount());
+            generator.writeFieldName(TIMESTAMP);
+            generator.writeNumber(transaction.getTimestamp());
+            generator.writeEndObject();
+        }
+    }
+
+    private static class UserAccountDeserializer extends StdDeserializer<UserAccount> {
+
+        UserAccountDeserializer() {
+            super(UserAccount.class);
+        }
+
+        @Override
+        public UserAccount deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw context.mappingException(UserAccount.class, parser.getCurrentToken());
+            }
+
+            UUID userId = null;
+            BigDecimal balance = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+
+                if (USER_ID.getValue().equals(name)) {
+                    userId = readUuid(parser, context);
+                } else if (BALANCE.getValue().equals(name)) {
+                    balance = readDecimal(parser, context);
+                } else {
+                    skipUnknown(parser, context, this, name);
+                }
+            }
+
+            // the same defaults as in UserAccount()
+            return new UserAccount(userId != null ? userId : UUID.randomUUID(), balance != null ? balance : BigDecimal.ZERO);
+        }
+    }
+
+    private static class TransferTransactionDeserializer extends StdDeserializer<TransferTransaction> {
+
+        TransferTransactionDeserializer() {
+            super(TransferTransaction.class);
+        }
+
+        @Override
+        public TransferTransaction deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw context.mappingException(TransferTransaction.class, parser.getCurrentToken());
+            }
+
+            UUID from = null;
+            UUID to = null;
+            BigDecimal amount = null;
+            long timestamp = 0;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if (FROM.getValue().equals(name)) {
+                    from = readUuid(parser, context);
+                } else if (TO.getValue().equals(name)) {
+                    to = readUuid(parser, context);
+                } else if (AMOUNT.getValue().equals(name)) {
+                    amount = readDecimal(parser, context);
+                } else if (TIMESTAMP.getValue().equals(name)) {
+                    if (token == JsonToken.VALUE_NUMBER_INT) {
+                        timestamp = parser.getLongValue();
+                    } else if (token != JsonToken.VALUE_NULL) {
+                        timestamp = readDecimal(parser, context).longValue();
+                    }
+                } else {
+                    skipUnknown(parser, context, this, name);
+                }
+            }
+
+            return new TransferTransaction(from, to, amount, timestamp);
+        }
+    }
+
+    private static void writeUuid(JsonGenerator generator, SerializableString name, UUID value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        char[] buffer = new char[Uuids.LENGTH];
+        Uuids.write(value, buffer, 0);
+
+        generator.writeFieldName(name);
+        generator.writeString(buffer, 0, Uuids.LENGTH);
+    }
+
+    private static void writeDecimal(JsonGenerator generator, SerializableString name, BigDecimal value)
+            throws IOException {
+
+        if (value == null) {
+            return;
+        }
+
+        generator.writeFieldName(name);
+        generator.writeNumber(value);
+    }
+
+    private static UUID readUuid(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw context.mappingException(UUID.class, token);
+        }
+
+        String text = parser.getText();
+        try {
+            return Uuids.parse(text);
+        } catch (IllegalArgumentException e) {
+            throw context.weirdStringException(text, UUID.class, e.getMessage());
+        }
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw context.mappingException(BigDecimal.class, token);
+        }
+
+        String text = parser.getText().trim();
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw context.weirdStringException(text, BigDecimal.class, "not a valid representation");
+        }
+    }
+
+    private static void skipUnknown(JsonParser parser, DeserializationContext context,
+                                    JsonDeserializer<?> deserializer, String name) throws IOException {
+
+        if (!context.handleUnknownProperty(parser, deserializer, deserializer.handledType(), name)
+                && context.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)) {
+            throw UnrecognizedPropertyException.from(parser, deserializer.handledType(), name, null);
+        }
+        parser.skipChildren();
+    }
+}
@@ -0,0 +1,98 @@
+package ru.khasanov.rest.provider;
+
+import ru.khasanov.rest.model.TransferTransaction;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * <p>Writer of {@link TransferTransaction} lists in JSON format that serializes every transaction only once.</p>
+ * <p>JSON encoding of a transaction is produced by the regular JSON writer when the transaction is written
+ * for the first time and is kept on the transaction. Lists are written by concatenating kept encodings,
+ * so the output is identical to the output of the regular writer.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+@Produces(MediaType.APPLICATION_JSON)
+public class PreSerializedJsonWriter implements MessageBodyWriter<Collection<TransferTransaction>> {
+
+    private static final byte[] ARRAY_START = {'['};
+
+    private static final byte[] ARRAY_END = {']'};
+
+    private static final byte[] SEPARATOR = {','};
+
+    @Context
+    private Providers providers;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Collection.class.isAssignableFrom(type) && genericType instanceof ParameterizedType
+                && TransferTransaction.class.equals(((ParameterizedType) genericType).getActualTypeArguments()[0]);
+    }
+
+    @Override
+    public long getSize(Collection<TransferTransaction> transactions, Class<?> type, Type genericType,
+                        Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Collection<TransferTransaction> transactions, Class<?> type, Type genericType,
+                        Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException, WebApplicationException {
+
+        MessageBodyWriter<TransferTransaction> writer = null;
+
+        entityStream.write(ARRAY_START);
+
+        boolean first = true;
+        for (TransferTransaction transaction : transactions) {
+            byte[] json = transaction.getJson();
+
+            if (json == null) {
+                if (writer == null) {
+                    writer = getTransactionWriter(annotations, mediaType);
+                }
+
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                writer.writeTo(transaction, TransferTransaction.class, TransferTransaction.class, annotations,
+                        mediaType, new MultivaluedHashMap<>(), outputStream);
+                json = outputStream.toByteArray();
+                transaction.setJson(json);
+            }
+
+            if (!first) {
+                entityStream.write(SEPARATOR);
+            }
+            entityStream.write(json);
+            first = false;
+        }
+
+        entityStream.write(ARRAY_END);
+    }
+
+    private MessageBodyWriter<TransferTransaction> getTransactionWriter(Annotation[] annotations, MediaType mediaType)
+            throws IOException {
+
+        MessageBodyWriter<TransferTransaction> writer = providers.getMessageBodyWriter(
+                TransferTransaction.class, TransferTransaction.class, annotations, mediaType);
+        if (writer == null) {
+            throw new IOException("No writer of transactions for media type " + mediaType);
+        }
+        return writer;
+    }
+}
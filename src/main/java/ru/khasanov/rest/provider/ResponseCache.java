@@ -0,0 +1,89 @@
+package ru.khasanov.rest.provider;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of serialized or compressed response bodies bounded by total size of cached bodies.
+ * Least recently used bodies are evicted first.
+ *
+ * @author Aleksandr Khasanov
+ */
+public class ResponseCache {
+
+    private static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxSize;
+
+    private long size;
+
+    /**
+     * Creates new instance of {@link ResponseCache} with default size bound.
+     */
+    public ResponseCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates new instance of {@link ResponseCache}.
+     *
+     * @param maxSize maximum total size of cached bodies in bytes
+     */
+    public ResponseCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get cached body.
+     *
+     * @param key cache key. Must not be {@code null}
+     * @return cached body if present. {@code null} otherwise
+     */
+    public synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Put body to cache. Bodies larger than cache bound are not cached.
+     *
+     * @param key  cache key. Must not be {@code null}
+     * @param body body. Must not be {@code null}
+     */
+    public synchronized void put(String key, byte[] body) {
+        if (body.length > maxSize) {
+            return;
+        }
+
+        byte[] previous = entries.put(key, body);
+        if (previous != null) {
+            size -= previous.length;
+        }
+        size += body.length;
+
+        Iterator<byte[]> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Remove all cached bodies.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Get total size of cached bodies.
+     *
+     * @return total size of cached bodies in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.khasanov.rest.provider;
+
+import javax.ws.rs.ext.ParamConverter;
+import javax.ws.rs.ext.ParamConverterProvider;
+import javax.ws.rs.ext.Provider;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.UUID;
+
+/**
+ * Converts path, query and header parameters to {@link UUID} with {@link Uuids}.
+ *
+ * @author Aleksandr Khasanov
+ */
+@Provider
+public class UuidParamConverterProvider implements ParamConverterProvider {
+
+    private static final ParamConverter<UUID> CONVERTER = new ParamConverter<UUID>() {
+
+        @Override
+        public UUID fromString(String value) {
+            if (value == null) {
+                throw new IllegalArgumentException("UUID parameter has null value");
+            }
+            return Uuids.parse(value);
+        }
+
+        @Override
+        public String toString(UUID value) {
+            if (value == null) {
+                throw new IllegalArgumentException("UUID parameter has null value");
+            }
+            return value.toString();
+        }
+    };
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ParamConverter<T> getConverter(Class<T> rawType, Type genericType, Annotation[] annotations) {
+        return UUID.class.equals(rawType) ? (ParamConverter<T>) CONVERTER : null;
+    }
+}
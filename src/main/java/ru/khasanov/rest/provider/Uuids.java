@@ -0,0 +1,79 @@
+package ru.khasanov.rest.provider;
+
+import java.util.UUID;
+
+/**
+ * <p>Conversion of {@link UUID} to and from its string representation without intermediate allocations.</p>
+ * <p>Canonical 36 character representation is handled directly. Other representations accepted by
+ * {@link UUID#fromString(String)} are delegated to it.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public final class Uuids {
+
+    public static final int LENGTH = 36;
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Uuids() {
+    }
+
+    /**
+     * Parse {@link UUID} from its string representation.
+     *
+     * @param value string representation. Must not be {@code null}
+     * @return parsed {@link UUID}
+     * @throws IllegalArgumentException if value is not a valid representation of {@link UUID}
+     */
+    public static UUID parse(CharSequence value) {
+        if (value.length() != LENGTH || value.charAt(8) != '-' || value.charAt(13) != '-'
+                || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return UUID.fromString(value.toString());
+        }
+
+        long mostSigBits = parseHex(value, 0, 8) << 32 | parseHex(value, 9, 13) << 16 | parseHex(value, 14, 18);
+        long leastSigBits = parseHex(value, 19, 23) << 48 | parseHex(value, 24, 36);
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Write canonical string representation of {@link UUID}.
+     *
+     * @param uuid   {@link UUID}. Must not be {@code null}
+     * @param buffer buffer with at least {@value #LENGTH} characters after offset. Must not be {@code null}
+     * @param offset position of the first character in buffer
+     */
+    public static void write(UUID uuid, char[] buffer, int offset) {
+        long mostSigBits = uuid.getMostSignificantBits();
+        long leastSigBits = uuid.getLeastSignificantBits();
+
+        writeHex(mostSigBits >>> 32, 8, buffer, offset);
+        buffer[offset + 8] = '-';
+        writeHex(mostSigBits >>> 16, 4, buffer, offset + 9);
+        buffer[offset + 13] = '-';
+        writeHex(mostSigBits, 4, buffer, offset + 14);
+        buffer[offset + 18] = '-';
+        writeHex(leastSigBits >>> 48, 4, buffer, offset + 19);
+        buffer[offset + 23] = '-';
+        writeHex(leastSigBits, 12, buffer, offset + 24);
+    }
+
+    private static long parseHex(CharSequence value, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid UUID string: " + value);
+            }
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+
+    private static void writeHex(long value, int digits, char[] buffer, int offset) {
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[offset + i] = DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
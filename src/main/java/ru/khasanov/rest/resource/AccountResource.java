@@ -4,8 +4,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import ru.khasanov.rest.ApplicationService;
 import ru.khasanov.rest.manage.AccountManager;
+import ru.khasanov.rest.manage.TransactionManager;
+import ru.khasanov.rest.model.TransferTransaction;
 import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.provider.BinaryMediaType;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.InternalServerErrorException;
@@ -17,10 +22,15 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -36,6 +46,16 @@ public class AccountResource {
 
     public static final String ACCOUNTS = "/accounts";
 
+    public static final String BATCH = "/batch";
+
+    public static final String LOOKUP = "/lookup";
+
+    public static final String TOP = "/top";
+
+    public static final String TRANSACTIONS = "/transactions";
+
+    private static final int DEFAULT_HISTORY_COUNT = 100;
+
     private static final String USER_ID_PATTERN = "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}";
 
     private static final String USER_ID = "id";
@@ -46,17 +66,29 @@ public class AccountResource {
 
     private AccountManager accountManager = ApplicationService.getInstance().getAccountManager();
 
+    private TransactionManager transactionManager = ApplicationService.getInstance().getTransactionManager();
+
     /**
      * Get all user accounts.
+     * Responds with {@code 304 Not Modified} if entity tag passed in {@code If-None-Match} header is up to date.
      *
-     * @return {@link List} of all user accounts
+     * @param request request. Must not be {@code null}
+     * @return {@link Response} with {@link List} of all user accounts
      */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<UserAccount> getAllAccounts() {
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public Response getAllAccounts(@Context Request request) {
+
+        EntityTag tag = EntityTags.forAccounts(accountManager.getVersion(), transactionManager.getLedgerVersion(),
+                EntityTags.selectMediaType(request));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
 
         try {
-            return accountManager.getAllAccounts();
+            return Response.ok(new GenericEntity<List<UserAccount>>(accountManager.getAllAccounts()) {
+            }).tag(tag).build();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new WebApplicationException("Request processing was interrupted");
@@ -70,19 +102,94 @@ public class AccountResource {
 
     /**
      * Get user account by id.
+     * Responds with {@code 304 Not Modified} if entity tag passed in {@code If-None-Match} header is up to date.
+     * If {@code as_of} parameter is passed, account is returned with balance it had at that time.
      *
-     * @param userId user id. Must not be {@code null}
-     * @return {@link UserAccount} for specified id
+     * @param userId  user id. Must not be {@code null}
+     * @param asOf    time in milliseconds. In case of {@code null} value current balance is returned
+     * @param request request. Must not be {@code null}
+     * @return {@link Response} with {@link UserAccount} for specified id
      */
     @GET
     @Path(USER)
-    @Produces(MediaType.APPLICATION_JSON)
-    public UserAccount getAccount(@PathParam(USER_ID) UUID userId) {
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public Response getAccount(@PathParam(USER_ID) UUID userId,
+                               @QueryParam(AccountsRequestParameters.AS_OF) Long asOf,
+                               @Context Request request) {
 
         try {
+            if (asOf != null) {
+                UserAccount account = transactionManager.getAccountAsOf(userId, asOf);
+                if (account != null) {
+                    return Response.ok(account).build();
+                }
+                logger.warn("Account with following id not found: {}", userId);
+                throw new NotFoundException("Account not found: " + userId);
+            }
+
             UserAccount account = accountManager.getAccount(userId);
             if (account != null) {
-                return account;
+                EntityTag tag = EntityTags.forAccount(account, EntityTags.selectMediaType(request));
+                Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+                if (notModified != null) {
+                    return notModified.build();
+                }
+                return Response.ok(account).tag(tag).build();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Request processing was interrupted");
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Request processing timed out");
+        } catch (ExecutionException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            throw new InternalServerErrorException("Internal error while request processing");
+        }
+
+        logger.warn("Account with following id not found: {}", userId);
+        throw new NotFoundException("Account not found: " + userId);
+    }
+
+    /**
+     * <p>Get page of account history: transactions the account transmitted or received, newest first.</p>
+     * <p>Page is read from postings of the account, so its cost depends on offset and size of the page
+     * but not on the number of all transactions.</p>
+     * <p>Responds with {@code 304 Not Modified} if entity tag passed in {@code If-None-Match} header is up to date.</p>
+     *
+     * @param userId  user id. Must not be {@code null}
+     * @param count   maximum number of transactions. In case of {@code null} value 100 transactions are returned
+     * @param offset  number of the newest transactions to skip. In case of {@code null} value none are skipped
+     * @param request request. Must not be {@code null}
+     * @return {@link Response} with {@link List} of transactions of the account
+     */
+    @GET
+    @Path(USER + TRANSACTIONS)
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public Response getAccountHistory(@PathParam(USER_ID) UUID userId,
+                                      @QueryParam(AccountsRequestParameters.COUNT) Integer count,
+                                      @QueryParam(AccountsRequestParameters.OFFSET) Integer offset,
+                                      @Context Request request) {
+
+        if (count != null && count <= 0) {
+            throw new BadRequestException("Parameter '" + AccountsRequestParameters.COUNT + "' must be positive");
+        }
+        if (offset != null && offset < 0) {
+            throw new BadRequestException("Parameter '" + AccountsRequestParameters.OFFSET + "' must not be negative");
+        }
+
+        EntityTag tag = EntityTags.forTransactions(transactionManager.getLedgerVersion(),
+                EntityTags.selectMediaType(request));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        try {
+            List<TransferTransaction> transactions = transactionManager.getAccountHistory(userId,
+                    offset != null ? offset : 0, count != null ? count : DEFAULT_HISTORY_COUNT);
+            if (transactions != null) {
+                return Response.ok(new GenericEntity<List<TransferTransaction>>(transactions) {
+                }).tag(tag).build();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -131,6 +238,99 @@ public class AccountResource {
         }
     }
 
+    /**
+     * Get accounts with the largest balances in descending order of balances.
+     *
+     * @param count maximum number of accounts. Must be positive
+     * @return {@link List} of accounts with the largest balances
+     */
+    @GET
+    @Path(TOP)
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public List<UserAccount> getTopAccounts(@QueryParam(AccountsRequestParameters.COUNT) Integer count) {
+        if (count == null || count <= 0) {
+            throw new BadRequestException("Parameter '" + AccountsRequestParameters.COUNT + "' must be positive");
+        }
+
+        return accountManager.getTopAccounts(count);
+    }
+
+    /**
+     * Create several user accounts in one operation.
+     * Accounts without id get random {@code UUID}, accounts without balance get {@code BigDecimal.ZERO}.
+     * Batch containing {@code null} accounts is rejected with {@code 400 Bad Request}.
+     *
+     * @param accounts accounts to be created
+     * @return {@link Response} specifying result of operation with the list of created accounts
+     */
+    @POST
+    @Path(BATCH)
+    @Consumes({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public Response createAccounts(List<UserAccount> accounts) {
+
+        if (accounts == null || accounts.isEmpty()) {
+            logger.warn("Batch of accounts to create is empty");
+            return Response.status(Response.Status.NOT_MODIFIED).build();
+        }
+
+        List<UserAccount> newAccounts = new ArrayList<>(accounts.size());
+        for (UserAccount account : accounts) {
+            if (account == null) {
+                logger.warn("Batch of accounts to create contains null account");
+                throw new BadRequestException("Batch of accounts must not contain null accounts");
+            }
+            UUID userId = account.getUserId() != null ? account.getUserId() : UUID.randomUUID();
+            BigDecimal balance = account.getBalance() != null ? account.getBalance() : BigDecimal.ZERO;
+            newAccounts.add(new UserAccount(userId, balance));
+        }
+
+        try {
+            List<UserAccount> created = accountManager.createNewAccounts(newAccounts);
+            return Response.status(Response.Status.CREATED)
+                    .entity(new GenericEntity<List<UserAccount>>(created) {
+                    })
+                    .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.NOT_MODIFIED).build();
+        } catch (TimeoutException e) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT).build();
+        } catch (ExecutionException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Get several user accounts by ids. Ids of missing accounts are skipped.
+     *
+     * @param userIds user ids
+     * @return {@link List} of existing user accounts
+     */
+    @POST
+    @Path(LOOKUP)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public List<UserAccount> lookupAccounts(List<UUID> userIds) {
+
+        if (userIds == null) {
+            throw new BadRequestException("List of account ids is required");
+        }
+
+        try {
+            return accountManager.getAccounts(userIds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Request processing was interrupted");
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Request processing timed out");
+        } catch (ExecutionException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            throw new InternalServerErrorException("Internal error while request processing");
+        }
+    }
+
     /**
      * Delete user account.
      *
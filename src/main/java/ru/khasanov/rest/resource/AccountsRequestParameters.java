@@ -11,4 +11,10 @@ public class AccountsRequestParameters {
 
     public static final String BALANCE = "balance";
 
+    public static final String COUNT = "n";
+
+    public static final String AS_OF = "as_of";
+
+    public static final String OFFSET = "offset";
+
 }
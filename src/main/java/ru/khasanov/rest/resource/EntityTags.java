@@ -0,0 +1,95 @@
+package ru.khasanov.rest.resource;
+
+import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.provider.BinaryMediaType;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Variant;
+import java.util.List;
+
+/**
+ * Entity tags of resource representations.
+ * Tags are prefixed with start time of the service, so tags issued before restart never match.
+ * Tags of JSON and binary representations of the same resource differ.
+ *
+ * @author Aleksandr Khasanov
+ */
+final class EntityTags {
+
+    /**
+     * Representations resources are available in.
+     */
+    static final List<Variant> VARIANTS = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE, BinaryMediaType.APPLICATION_BINARY_TYPE).build();
+
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private EntityTags() {
+    }
+
+    /**
+     * Select representation of response by {@code Accept} header of request.
+     * Response gets {@code Vary: Accept} header as a result.
+     *
+     * @param request request. Must not be {@code null}
+     * @return media type of selected representation. {@code null} if none of {@link #VARIANTS} is acceptable
+     */
+    static MediaType selectMediaType(Request request) {
+        Variant variant = request.selectVariant(VARIANTS);
+        return variant != null ? variant.getMediaType() : null;
+    }
+
+    /**
+     * Get entity tag of user account.
+     *
+     * @param account   user account. Must not be {@code null}
+     * @param mediaType media type of representation
+     * @return {@link EntityTag} of user account
+     */
+    static EntityTag forAccount(UserAccount account, MediaType mediaType) {
+        return new EntityTag(EPOCH + "-a" + account.getVersion() + representation(mediaType));
+    }
+
+    /**
+     * Get entity tag of list of all user accounts.
+     * Balances change only when transactions are committed, so the list is identified
+     * by version of accounts set together with ledger version.
+     *
+     * @param accountsVersion version of accounts set
+     * @param ledgerVersion   ledger version
+     * @param mediaType       media type of representation
+     * @return {@link EntityTag} of list of all user accounts
+     */
+    static EntityTag forAccounts(long accountsVersion, long ledgerVersion, MediaType mediaType) {
+        return new EntityTag(EPOCH + "-s" + accountsVersion + "-l" + ledgerVersion + representation(mediaType));
+    }
+
+    /**
+     * Get entity tag of transactions query result.
+     *
+     * @param ledgerVersion ledger version
+     * @param mediaType     media type of representation
+     * @return {@link EntityTag} of transactions query result
+     */
+    static EntityTag forTransactions(long ledgerVersion, MediaType mediaType) {
+        return new EntityTag(EPOCH + "-l" + ledgerVersion + representation(mediaType));
+    }
+
+    /**
+     * Get entity tag of transactions query result over time period that ended in the past.
+     * New transactions never fall into such period, so the result changes only when history is compacted.
+     *
+     * @param compactionEpoch compaction epoch
+     * @param mediaType       media type of representation
+     * @return {@link EntityTag} of transactions query result
+     */
+    static EntityTag forHistory(long compactionEpoch, MediaType mediaType) {
+        return new EntityTag(EPOCH + "-c" + compactionEpoch + representation(mediaType));
+    }
+
+    private static String representation(MediaType mediaType) {
+        return BinaryMediaType.APPLICATION_BINARY_TYPE.isCompatible(mediaType) ? "-b" : "-j";
+    }
+}
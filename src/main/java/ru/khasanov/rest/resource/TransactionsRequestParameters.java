@@ -15,6 +15,10 @@ public class TransactionsRequestParameters {
 
     public static final String TO_DATE = "to_date";
 
+    public static final String FROM_POSITION = "from_position";
+
+    public static final String EXPLAIN = "explain";
+
     private TransactionsRequestParameters() {
     }
 }
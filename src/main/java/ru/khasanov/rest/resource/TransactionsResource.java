@@ -2,26 +2,61 @@ package ru.khasanov.rest.resource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
 import ru.khasanov.rest.ApplicationService;
+import ru.khasanov.rest.manage.HistoryCompactor;
+import ru.khasanov.rest.manage.LedgerReconciler;
+import ru.khasanov.rest.manage.RateLimiter;
+import ru.khasanov.rest.manage.TransactionFeed;
 import ru.khasanov.rest.manage.TransactionManager;
+import ru.khasanov.rest.model.Hold;
+import ru.khasanov.rest.model.ReconciliationReport;
+import ru.khasanov.rest.model.ScheduledTransfer;
 import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.provider.BinaryMediaType;
+import ru.khasanov.rest.provider.ResponseCache;
+import ru.khasanov.rest.storage.QueryResult;
+import ru.khasanov.rest.storage.TransactionQuery;
 
+import javax.inject.Provider;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 @Path(TransactionsResource.TRANSACTIONS)
@@ -31,10 +66,63 @@ public class TransactionsResource {
 
     public static final String TRANSFER = "/transfer";
 
+    public static final String STREAM = "/stream";
+
+    public static final String HOLDS = "/holds";
+
+    public static final String CAPTURE = "/capture";
+
+    public static final String RELEASE = "/release";
+
+    public static final String SCHEDULED = "/scheduled";
+
+    public static final String RECONCILIATION = "/reconciliation";
+
+    private static final String HOLD_ID = "id";
+
+    private static final String HOLD = HOLDS + "/{" + HOLD_ID + "}";
+
+    private static final String SCHEDULED_TRANSFER_ID = "id";
+
+    private static final String SCHEDULED_TRANSFER = SCHEDULED + "/{" + SCHEDULED_TRANSFER_ID + "}";
+
+    public static final String TRANSACTION_EVENT = "transaction";
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    public static final String QUERY_PLAN = "X-Query-Plan";
+
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final long CLOSED_WINDOW_MARGIN = 1000;
+
+    private static final int CLOSED_WINDOW_MAX_AGE = 24 * 60 * 60;
+
     private static Logger logger = LogManager.getLogger(TransactionsResource.class);
 
+    private static final String HISTORY_CACHE_PLAN = "HISTORY_CACHE";
+
+    private static final Type TRANSACTIONS_TYPE = new GenericType<List<TransferTransaction>>() {
+    }.getType();
+
     private TransactionManager transactionManager = ApplicationService.getInstance().getTransactionManager();
 
+    private ResponseCache historyCache = ApplicationService.getInstance().getHistoryCache();
+
+    private RateLimiter accountRateLimiter = ApplicationService.getInstance().getAccountRateLimiter();
+
+    private RateLimiter clientRateLimiter = ApplicationService.getInstance().getClientRateLimiter();
+
+    private LedgerReconciler ledgerReconciler = ApplicationService.getInstance().getLedgerReconciler();
+
+    @Context
+    private Provider<org.glassfish.grizzly.http.server.Request> connectionRequest;
+
+    @Context
+    private Providers providers;
+
     /**
      * <p>Get list of transactions that match specific request query parameters.</p>
      * <p>Following parameters are accepted:</p>
@@ -43,17 +131,131 @@ public class TransactionsResource {
      * <li>to_id - specifies id of the recipient. This parameter should match {@link UUID} string representation.</li>
      * <li>from_date - specifies beginning of time period. </li>
      * <li>to_date - specifies ending of time period. </li>
+     * <li>explain - if {@code true}, plan used to read transactions is returned in {@code X-Query-Plan} header.
+     * Responses served from history cache have {@code HISTORY_CACHE} plan.</li>
      * </ul>
      * <p>Parameters that are not supported are ignored while method execution.</p>
+     * <p>Responds with {@code 304 Not Modified} if entity tag passed in {@code If-None-Match} header is up to date.
+     * Results for time periods that ended in the past change only when history of deleted accounts is compacted.
+     * They are tagged and cached per compaction epoch, marked as cacheable until the next compaction is due,
+     * and their serialized bodies are kept in history cache, so repeated queries are not executed again.</p>
      *
-     * @param info request uri information. Must not be {@code null}
-     * @return {@link List} of transactions that match request query parameters
+     * @param info    request uri information. Must not be {@code null}
+     * @param request request. Must not be {@code null}
+     * @return {@link Response} with {@link List} of transactions that match request query parameters
      */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<TransferTransaction> getTransactions(@Context UriInfo info) {
+    @Produces({MediaType.APPLICATION_JSON, BinaryMediaType.APPLICATION_BINARY})
+    public Response getTransactions(@Context UriInfo info, @Context Request request) {
+
+        MultivaluedMap<String, String> queryParameters = info.getQueryParameters();
+        boolean explain = Boolean.parseBoolean(queryParameters.getFirst(TransactionsRequestParameters.EXPLAIN));
+
+        TransactionQuery query;
         try {
-            return transactionManager.getTransactions(info.getQueryParameters());
+            query = TransactionQuery.parse(queryParameters);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid query parameters: " + e.getMessage());
+        }
+
+        // epoch is read before the query, so a body read while compaction runs is kept under the previous epoch
+        boolean closedWindow = isClosedWindow(query);
+        long compactionEpoch = transactionManager.getCompactionEpoch();
+
+        MediaType mediaType = EntityTags.selectMediaType(request);
+        EntityTag tag = closedWindow ? EntityTags.forHistory(compactionEpoch, mediaType)
+                : EntityTags.forTransactions(transactionManager.getLedgerVersion(), mediaType);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        try {
+            if (closedWindow && mediaType != null) {
+                String key = mediaType + " " + compactionEpoch + " " + query;
+
+                byte[] body = historyCache.get(key);
+                String plan = HISTORY_CACHE_PLAN;
+                if (body == null) {
+                    QueryResult result = transactionManager.queryTransactions(query);
+                    body = serialize(result.getTransactions(), mediaType);
+                    historyCache.put(key, body);
+                    plan = result.getPlan().toString();
+                }
+
+                Response.ResponseBuilder builder = Response.ok(body, mediaType).tag(tag);
+                int maxAge = getClosedWindowMaxAge();
+                if (maxAge > 0) {
+                    CacheControl cacheControl = new CacheControl();
+                    cacheControl.setMaxAge(maxAge);
+                    builder.cacheControl(cacheControl);
+                }
+                if (explain) {
+                    builder.header(QUERY_PLAN, plan);
+                }
+                return builder.build();
+            }
+
+            QueryResult result = transactionManager.queryTransactions(query);
+
+            Response.ResponseBuilder builder = Response.ok(
+                    new GenericEntity<List<TransferTransaction>>(result.getTransactions()) {
+                    }).tag(tag);
+
+            if (explain) {
+                builder.header(QUERY_PLAN, result.getPlan());
+            }
+
+            return builder.build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Request processing was interrupted");
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Request processing timed out");
+        } catch (ExecutionException | IOException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            throw new InternalServerErrorException("Internal error while request processing");
+        }
+    }
+
+    /**
+     * <p>Stream committed transactions as server-sent events.</p>
+     * <p>Every event carries position of the transaction as its id. Following parameters are accepted:</p>
+     * <ul>
+     * <li>from_id - deliver only transactions of this transmitter.</li>
+     * <li>to_id - deliver only transactions of this recipient.</li>
+     * <li>from_position - deliver already committed transactions starting from this position.</li>
+     * </ul>
+     * <p>If from_position is not specified, stream is resumed after the position passed in
+     * {@code Last-Event-ID} header. Subscribers that do not keep up with the stream are disconnected.</p>
+     *
+     * @param fromId      transmitter id. In case of {@code null} value transactions of all transmitters are streamed
+     * @param toId        recipient id. In case of {@code null} value transactions of all recipients are streamed
+     * @param position    position of the first transaction to stream
+     * @param lastEventId id of the last event received by client
+     * @return {@link EventOutput} of transactions
+     */
+    @GET
+    @Path(STREAM)
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    public EventOutput streamTransactions(
+            @QueryParam(TransactionsRequestParameters.FROM_ID) UUID fromId,
+            @QueryParam(TransactionsRequestParameters.TO_ID) UUID toId,
+            @QueryParam(TransactionsRequestParameters.FROM_POSITION) Long position,
+            @HeaderParam(SseFeature.LAST_EVENT_ID_HEADER) Long lastEventId) {
+
+        if (position == null && lastEventId != null) {
+            position = lastEventId + 1;
+        }
+
+        EventOutput eventOutput = new EventOutput();
+
+        try {
+            transactionManager.subscribe(
+                    transaction -> (fromId == null || fromId.equals(transaction.getFrom()))
+                            && (toId == null || toId.equals(transaction.getTo())),
+                    position, new EventOutputListener(eventOutput));
+            return eventOutput;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new WebApplicationException("Request processing was interrupted");
@@ -66,11 +268,18 @@ public class TransactionsResource {
     }
 
     /**
-     * Transfer specified amount between accounts.
+     * <p>Transfer specified amount between accounts.</p>
+     * <p>Requests with the same {@code Idempotency-Key} header perform transfer only once and get outcome
+     * of the first request, so they may be safely retried. Reusing a key for transfer with other parameters
+     * is rejected with {@code 422 Unprocessable Entity}.</p>
+     * <p>Requests over rate limit of transmitter account or client are rejected with
+     * {@code 429 Too Many Requests} before any work is done. Retries with a known idempotency key are not
+     * limited, as they only get outcome of the first request.</p>
      *
-     * @param fromId transmitter id. In case of {@code null} value no transfer is performed
-     * @param toId   recipient id. In case of {@code null} value no transfer is performed
-     * @param amount amount to transfer. In case of {@code null} value no transfer is performed
+     * @param fromId         transmitter id. In case of {@code null} value no transfer is performed
+     * @param toId           recipient id. In case of {@code null} value no transfer is performed
+     * @param amount         amount to transfer. In case of {@code null} value no transfer is performed
+     * @param idempotencyKey idempotency key. In case of {@code null} value transfer is always performed
      * @return {@link Response} specifying result of operation
      */
     @POST
@@ -78,7 +287,8 @@ public class TransactionsResource {
     public Response transfer(
             @QueryParam(TransferQueryParameters.FROM) UUID fromId,
             @QueryParam(TransferQueryParameters.TO) UUID toId,
-            @QueryParam(TransferQueryParameters.AMOUNT) BigDecimal amount) {
+            @QueryParam(TransferQueryParameters.AMOUNT) BigDecimal amount,
+            @HeaderParam(IDEMPOTENCY_KEY) String idempotencyKey) {
 
         if (fromId == null || toId == null || amount == null) {
 
@@ -98,8 +308,16 @@ public class TransactionsResource {
         }
 
         try {
-            transactionManager.transfer(fromId, toId, amount);
+            transactionManager.transfer(idempotencyKey, fromId, toId, amount, () -> {
+                Response limited = checkRateLimits(fromId);
+                if (limited != null) {
+                    throw new WebApplicationException(limited);
+                }
+            });
             return Response.ok().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Request not processed due to reason: " + e.getMessage());
+            return Response.status(UNPROCESSABLE_ENTITY).build();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return Response.status(Response.Status.NOT_MODIFIED).build();
@@ -116,4 +334,329 @@ public class TransactionsResource {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * <p>Hold amount on transmitter account for later transfer to recipient.</p>
+     * <p>Held amount is not available for transfers until hold is captured or released.
+     * Hold is released automatically when its time to live passes.</p>
+     *
+     * @param fromId     transmitter id. In case of {@code null} value nothing is held
+     * @param toId       recipient id. In case of {@code null} value nothing is held
+     * @param amount     amount to hold. In case of {@code null} value nothing is held
+     * @param timeToLive time to live in milliseconds. In case of {@code null} value maximum time to live is used
+     * @return {@link Response} with created {@link Hold}
+     */
+    @POST
+    @Path(HOLDS)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response hold(
+            @QueryParam(TransferQueryParameters.FROM) UUID fromId,
+            @QueryParam(TransferQueryParameters.TO) UUID toId,
+            @QueryParam(TransferQueryParameters.AMOUNT) BigDecimal amount,
+            @QueryParam(TransferQueryParameters.TIME_TO_LIVE) Long timeToLive) {
+
+        if (fromId == null || toId == null || amount == null) {
+            logger.warn("Parameters 'from', 'to' and 'amount' are required to hold funds");
+            return Response.status(Response.Status.NOT_MODIFIED).build();
+        }
+
+        Response limited = checkRateLimits(fromId);
+        return limited != null ? limited : perform(() -> transactionManager.hold(fromId, toId, amount, timeToLive));
+    }
+
+    /**
+     * Get hold that is neither captured nor released yet.
+     *
+     * @param holdId hold id. Must not be {@code null}
+     * @return {@link Response} with {@link Hold}
+     */
+    @GET
+    @Path(HOLD)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getHold(@PathParam(HOLD_ID) UUID holdId) {
+
+        try {
+            Hold hold = transactionManager.getHold(holdId);
+            if (hold != null) {
+                return Response.ok(hold).build();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Request processing was interrupted");
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Request processing timed out");
+        } catch (ExecutionException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            throw new InternalServerErrorException("Internal error while request processing");
+        }
+
+        throw new NotFoundException("Hold not found: " + holdId);
+    }
+
+    /**
+     * Capture hold, transferring held amount or part of it to recipient with a single transaction.
+     * The rest of held amount becomes available again.
+     *
+     * @param holdId hold id. Must not be {@code null}
+     * @param amount amount to transfer. In case of {@code null} value the whole held amount is transferred
+     * @return {@link Response} specifying result of operation
+     */
+    @POST
+    @Path(HOLD + CAPTURE)
+    public Response capture(@PathParam(HOLD_ID) UUID holdId,
+                            @QueryParam(TransferQueryParameters.AMOUNT) BigDecimal amount) {
+
+        return perform(() -> {
+            transactionManager.capture(holdId, amount);
+            return null;
+        });
+    }
+
+    /**
+     * Release hold, so that held amount becomes available again.
+     *
+     * @param holdId hold id. Must not be {@code null}
+     * @return {@link Response} specifying result of operation
+     */
+    @POST
+    @Path(HOLD + RELEASE)
+    public Response release(@PathParam(HOLD_ID) UUID holdId) {
+
+        return perform(() -> {
+            transactionManager.release(holdId);
+            return null;
+        });
+    }
+
+    /**
+     * <p>Schedule transfer to be performed at given time, e.g. payroll at midnight.</p>
+     * <p>Transfers coming due at the same time are performed together as a batch.</p>
+     *
+     * @param fromId    transmitter id. In case of {@code null} value nothing is scheduled
+     * @param toId      recipient id. In case of {@code null} value nothing is scheduled
+     * @param amount    amount to transfer. In case of {@code null} value nothing is scheduled
+     * @param executeAt time in milliseconds when transfer is performed. In case of {@code null} value
+     *                  nothing is scheduled
+     * @return {@link Response} with created {@link ScheduledTransfer}
+     */
+    @POST
+    @Path(SCHEDULED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response scheduleTransfer(
+            @QueryParam(TransferQueryParameters.FROM) UUID fromId,
+            @QueryParam(TransferQueryParameters.TO) UUID toId,
+            @QueryParam(TransferQueryParameters.AMOUNT) BigDecimal amount,
+            @QueryParam(TransferQueryParameters.EXECUTE_AT) Long executeAt) {
+
+        if (fromId == null || toId == null || amount == null || executeAt == null) {
+            logger.warn("Parameters 'from', 'to', 'amount' and 'at' are required to schedule transfer");
+            return Response.status(Response.Status.NOT_MODIFIED).build();
+        }
+
+        Response limited = checkRateLimits(fromId);
+        return limited != null ? limited
+                : perform(() -> transactionManager.scheduleTransfer(fromId, toId, amount, executeAt));
+    }
+
+    /**
+     * Get scheduled transfer that is not performed yet.
+     *
+     * @param transferId scheduled transfer id. Must not be {@code null}
+     * @return {@link Response} with {@link ScheduledTransfer}
+     */
+    @GET
+    @Path(SCHEDULED_TRANSFER)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getScheduledTransfer(@PathParam(SCHEDULED_TRANSFER_ID) UUID transferId) {
+
+        try {
+            ScheduledTransfer transfer = transactionManager.getScheduledTransfer(transferId);
+            if (transfer != null) {
+                return Response.ok(transfer).build();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Request processing was interrupted");
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Request processing timed out");
+        } catch (ExecutionException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            throw new InternalServerErrorException("Internal error while request processing");
+        }
+
+        throw new NotFoundException("Scheduled transfer not found: " + transferId);
+    }
+
+    /**
+     * Cancel scheduled transfer that is not performed yet.
+     *
+     * @param transferId scheduled transfer id. Must not be {@code null}
+     * @return {@link Response} specifying result of operation
+     */
+    @DELETE
+    @Path(SCHEDULED_TRANSFER)
+    public Response cancelScheduledTransfer(@PathParam(SCHEDULED_TRANSFER_ID) UUID transferId) {
+
+        try {
+            if (transactionManager.cancelScheduledTransfer(transferId)) {
+                return Response.ok().build();
+            }
+            return Response.status(Response.Status.NOT_FOUND).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.NOT_MODIFIED).build();
+        } catch (TimeoutException e) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT).build();
+        } catch (ExecutionException e) {
+            logger.warn("Internal server error" + e.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * <p>Reconcile account balances with the ledger.</p>
+     * <p>Every account balance is compared with initial balance of account plus amounts it received minus
+     * amounts it transmitted. Transfers are not paused while reconciliation runs.</p>
+     *
+     * @return {@link Response} with {@link ReconciliationReport}
+     */
+    @POST
+    @Path(RECONCILIATION)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response reconcile() {
+
+        return perform(ledgerReconciler::reconcile);
+    }
+
+    /**
+     * Get report of the last finished reconciliation of account balances with the ledger.
+     *
+     * @return {@link Response} with {@link ReconciliationReport}
+     */
+    @GET
+    @Path(RECONCILIATION)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getReconciliationReport() {
+
+        ReconciliationReport report = ledgerReconciler.getLastReport();
+        if (report == null) {
+            throw new NotFoundException("Reconciliation has not run yet");
+        }
+        return Response.ok(report).build();
+    }
+
+    private Response checkRateLimits(UUID fromId) {
+        // client is identified by its address, as anything it sends about itself can be made up
+        Object client = clientRateLimiter != null ? connectionRequest.get().getRemoteAddr() : null;
+
+        // both limits are checked before a token is taken from either, so a request rejected by one limit
+        // does not use up the other
+        long wait = Math.max(clientRateLimiter != null ? clientRateLimiter.check(client) : 0,
+                accountRateLimiter != null ? accountRateLimiter.check(fromId) : 0);
+
+        if (wait == 0 && clientRateLimiter != null) {
+            wait = clientRateLimiter.tryAcquire(client);
+        }
+        if (wait == 0 && accountRateLimiter != null) {
+            wait = accountRateLimiter.tryAcquire(fromId);
+            if (wait > 0 && clientRateLimiter != null) {
+                // the last account token was taken by a concurrent request after the check
+                clientRateLimiter.release(client);
+            }
+        }
+        if (wait == 0) {
+            return null;
+        }
+
+        // rejected requests are not logged one by one, as that would make abuse more expensive for the service
+        return Response.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999)))
+                .build();
+    }
+
+    private static Response perform(Operation operation) {
+        try {
+            return Response.ok(operation.perform()).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.NOT_MODIFIED).build();
+        } catch (TimeoutException e) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT).build();
+        } catch (ExecutionException e) {
+
+            if (e.getCause() instanceof IllegalArgumentException) {
+                logger.warn("Request not processed due to reason: " + e.getCause().getMessage());
+                return Response.status(Response.Status.NOT_MODIFIED).build();
+            }
+
+            logger.warn("Internal server error" + e.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private interface Operation {
+
+        Object perform() throws InterruptedException, ExecutionException, TimeoutException;
+    }
+
+    private static class EventOutputListener implements TransactionFeed.TransactionListener {
+
+        private final EventOutput eventOutput;
+
+        EventOutputListener(EventOutput eventOutput) {
+            this.eventOutput = eventOutput;
+        }
+
+        @Override
+        public void onTransaction(long position, TransferTransaction transaction) throws IOException {
+            if (eventOutput.isClosed()) {
+                throw new IOException("Event output is closed");
+            }
+
+            eventOutput.write(new OutboundEvent.Builder()
+                    .id(String.valueOf(position))
+                    .name(TRANSACTION_EVENT)
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(TransferTransaction.class, transaction)
+                    .build());
+        }
+
+        @Override
+        public void onClose() {
+            try {
+                eventOutput.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close event output: {}", e.getMessage());
+            }
+        }
+    }
+
+    private byte[] serialize(List<TransferTransaction> transactions, MediaType mediaType) throws IOException {
+        MessageBodyWriter<List> writer = providers.getMessageBodyWriter(
+                List.class, TRANSACTIONS_TYPE, new Annotation[0], mediaType);
+        if (writer == null) {
+            throw new IOException("No writer of transactions for media type " + mediaType);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.writeTo(transactions, List.class, TRANSACTIONS_TYPE, new Annotation[0], mediaType,
+                new MultivaluedHashMap<>(), outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private int getClosedWindowMaxAge() {
+        HistoryCompactor historyCompactor = ApplicationService.getInstance().getHistoryCompactor();
+        if (historyCompactor == null) {
+            return CLOSED_WINDOW_MAX_AGE;
+        }
+
+        // closed period may still lose released transactions, but not before the next compaction is due
+        long stableFor = historyCompactor.getEarliestCompaction() - System.currentTimeMillis();
+        return (int) Math.max(0, Math.min(CLOSED_WINDOW_MAX_AGE, TimeUnit.MILLISECONDS.toSeconds(stableFor)));
+    }
+
+    private static boolean isClosedWindow(TransactionQuery query) {
+        return query.getToTimestamp() != null
+                && query.getToTimestamp() < System.currentTimeMillis() - CLOSED_WINDOW_MARGIN;
+    }
 }
@@ -13,6 +13,10 @@ public class TransferQueryParameters {
 
     public static final String AMOUNT = "amount";
 
+    public static final String TIME_TO_LIVE = "ttl";
+
+    public static final String EXECUTE_AT = "at";
+
     private TransferQueryParameters() {
     }
 
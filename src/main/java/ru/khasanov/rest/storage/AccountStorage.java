@@ -3,10 +3,13 @@ package ru.khasanov.rest.storage;
 import ru.khasanov.rest.model.UserAccount;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * In-memory storage for user accounts.
@@ -16,23 +19,100 @@ import java.util.UUID;
 public class AccountStorage {
     private Map<UUID, UserAccount> accounts = new HashMap<>();
 
+    private BalanceIndex balanceIndex = new BalanceIndex();
+
+    // time of deletion by id of deleted account whose history is not compacted yet
+    private Map<UUID, Long> tombstones = new ConcurrentHashMap<>();
+
+    private volatile long version;
+
+    private TransactionLog transactionLog;
+
+    /**
+     * Set up ledger whose length is recorded as opening position of every added account, so that account
+     * created again with id of a deleted or replaced account is not charged with transactions of the previous one.
+     *
+     * @param transactionLog {@link TransactionLog}. In case of {@code null} value accounts open at position 0
+     */
+    public void setTransactionLog(TransactionLog transactionLog) {
+        this.transactionLog = transactionLog;
+    }
+
     /**
      * Add user account.
      *
      * @param account user account. Must not be {@code null}
      */
     public void addAccount(UserAccount account) {
-        accounts.put(account.getUserId(), account);
+        put(account);
+        version++;
     }
 
     /**
-     * Delete user account.
+     * Add several user accounts at once.
+     *
+     * @param userAccounts user accounts. Must not be {@code null}
+     */
+    public void addAccounts(Collection<UserAccount> userAccounts) {
+        for (UserAccount account : userAccounts) {
+            put(account);
+        }
+        version++;
+    }
+
+    /**
+     * Delete user account. Tombstone of account is left until its history is compacted.
      *
      * @param userId user id. Must not be {@code null}
      * @return {@code true} if account was successfully deleted. {@code false} otherwise.
      */
     public boolean deleteAccount(UUID userId) {
-        return accounts.remove(userId) != null;
+        UserAccount account = accounts.remove(userId);
+        if (account == null) {
+            return false;
+        }
+        unindex(account);
+        tombstones.put(userId, System.currentTimeMillis());
+
+        version++;
+        return true;
+    }
+
+    /**
+     * Get tombstones of deleted accounts whose history is not compacted yet. Tombstones may be read by any thread.
+     *
+     * @return unmodifiable {@link Map} of deletion times in milliseconds by user ids
+     */
+    public Map<UUID, Long> getTombstones() {
+        return Collections.unmodifiableMap(tombstones);
+    }
+
+    /**
+     * Remove tombstone of deleted account once its history is compacted.
+     *
+     * @param userId user id. Must not be {@code null}
+     */
+    public void removeTombstone(UUID userId) {
+        tombstones.remove(userId);
+    }
+
+    /**
+     * Get version of accounts set. Version changes every time account is added or deleted.
+     * Changes of account balances do not affect this version.
+     *
+     * @return version of accounts set
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get index of accounts ordered by balance.
+     *
+     * @return {@link BalanceIndex}
+     */
+    public BalanceIndex getBalanceIndex() {
+        return balanceIndex;
     }
 
     /**
@@ -45,6 +125,25 @@ public class AccountStorage {
         return accounts.get(userId);
     }
 
+    /**
+     * Get user accounts by ids. Ids of missing accounts are skipped.
+     *
+     * @param userIds user ids. Must not be {@code null}
+     * @return {@link List} of existing user accounts in order of passed ids
+     */
+    public List<UserAccount> getUserAccounts(Collection<UUID> userIds) {
+        List<UserAccount> result = new ArrayList<>(userIds.size());
+
+        for (UUID userId : userIds) {
+            UserAccount account = accounts.get(userId);
+            if (account != null) {
+                result.add(account);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Get the list of all user accounts.
      *
@@ -53,4 +152,21 @@ public class AccountStorage {
     public List<UserAccount> getAllUserAccounts() {
         return new ArrayList<>(accounts.values());
     }
+
+    private void put(UserAccount account) {
+        account.setOpeningPosition(transactionLog != null ? transactionLog.size() : 0);
+
+        UserAccount previous = accounts.put(account.getUserId(), account);
+        if (previous != null) {
+            unindex(previous);
+        }
+
+        balanceIndex.add(account);
+        account.setBalanceListener(balanceIndex);
+    }
+
+    private void unindex(UserAccount account) {
+        account.setBalanceListener(null);
+        balanceIndex.remove(account);
+    }
 }
@@ -0,0 +1,76 @@
+package ru.khasanov.rest.storage;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Net flow of account remembered after every {@value #INTERVAL}-th transaction of the account.
+ *
+ * @author Aleksandr Khasanov
+ */
+class BalanceCheckpoints {
+
+    // maximum number of transactions replayed on top of a checkpoint
+    static final int INTERVAL = 64;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] positions = new int[INITIAL_CAPACITY];
+
+    private BigDecimal[] netFlows = new BigDecimal[INITIAL_CAPACITY];
+
+    private int size;
+
+    private BigDecimal netFlow = BigDecimal.ZERO;
+
+    private int transactions;
+
+    /**
+     * Account transaction. Position must be greater than all positions already added.
+     *
+     * @param position position of transaction
+     * @param amount   amount received by account. Negative for transmitted amounts
+     */
+    void add(int position, BigDecimal amount) {
+        netFlow = netFlow.add(amount);
+
+        if (++transactions % INTERVAL == 0) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                netFlows = Arrays.copyOf(netFlows, size * 2);
+            }
+            positions[size] = position;
+            netFlows[size] = netFlow;
+            size++;
+        }
+    }
+
+    /**
+     * Get position of the last transaction included in checkpoint.
+     *
+     * @param index index of checkpoint
+     * @return position
+     */
+    int getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Get amounts received minus amounts transmitted up to checkpoint, inclusive.
+     *
+     * @param index index of checkpoint
+     * @return net flow
+     */
+    BigDecimal getNetFlow(int index) {
+        return netFlows[index];
+    }
+
+    /**
+     * Get number of checkpoints.
+     *
+     * @return number of checkpoints
+     */
+    int size() {
+        return size;
+    }
+}
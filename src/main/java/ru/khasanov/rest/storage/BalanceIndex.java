@@ -0,0 +1,101 @@
+package ru.khasanov.rest.storage;
+
+import ru.khasanov.rest.model.UserAccount;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * <p>Index of user accounts ordered by balance.</p>
+ * <p>Index is updated by the thread that changes accounts and may be read by any thread at the same time.
+ * Readers get balances as they were indexed, so they never see balance of partially applied change.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class BalanceIndex implements UserAccount.BalanceListener {
+
+    private static final Comparator<Key> ORDER = Comparator.comparing((Key key) -> key.balance).reversed()
+            .thenComparing(key -> key.userId);
+
+    private final NavigableSet<Key> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    /**
+     * Add account to index.
+     *
+     * @param account account. Must not be {@code null}
+     */
+    public void add(UserAccount account) {
+        entries.add(new Key(account.getBalance(), account.getUserId()));
+    }
+
+    /**
+     * Remove account from index.
+     *
+     * @param account account. Must not be {@code null}
+     */
+    public void remove(UserAccount account) {
+        entries.remove(new Key(account.getBalance(), account.getUserId()));
+    }
+
+    @Override
+    public void onBalanceChanged(UserAccount account, BigDecimal oldBalance, BigDecimal newBalance) {
+        if (oldBalance.compareTo(newBalance) == 0) {
+            return;
+        }
+
+        // new entry is added first, so that concurrent readers never miss the account
+        entries.add(new Key(newBalance, account.getUserId()));
+        entries.remove(new Key(oldBalance, account.getUserId()));
+    }
+
+    /**
+     * Get accounts with the largest balances in descending order of balances.
+     *
+     * @param count maximum number of accounts
+     * @return {@link List} of accounts with balances as they were indexed
+     */
+    public List<UserAccount> getTop(int count) {
+        List<UserAccount> result = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+
+        for (Key key : entries) {
+            if (result.size() >= count) {
+                break;
+            }
+            // account that is being updated may be met twice
+            if (seen.add(key.userId)) {
+                result.add(new UserAccount(key.userId, key.balance));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get number of index entries. Entries are counted one by one.
+     *
+     * @return number of index entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Key {
+
+        private final BigDecimal balance;
+
+        private final UUID userId;
+
+        Key(BigDecimal balance, UUID userId) {
+            this.balance = balance;
+            this.userId = userId;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.khasanov.rest.storage;
+
+/**
+ * <p>Bloom filter of ids.</p>
+ * <p>Filter keeps about {@value #BITS_PER_ID} bits per expected id and sets {@value #HASHES} bits per id,
+ * which gives about 1% of false positives when filter holds expected number of ids.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_ID = 10;
+
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+
+    private final int mask;
+
+    /**
+     * Creates new instance of {@link BloomFilter}.
+     *
+     * @param expectedIds expected number of ids. Must be positive
+     */
+    BloomFilter(int expectedIds) {
+        int size = Integer.highestOneBit(Math.max(Long.SIZE, expectedIds * BITS_PER_ID - 1)) << 1;
+        bits = new long[size / Long.SIZE];
+        mask = size - 1;
+    }
+
+    /**
+     * Add id given by its halves.
+     *
+     * @param high most significant bits of id
+     * @param low  least significant bits of id
+     */
+    void add(long high, long low) {
+        long hash = hash(high, low);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Check whether id may have been added.
+     *
+     * @param high most significant bits of id
+     * @param low  least significant bits of id
+     * @return {@code false} if id was certainly not added
+     */
+    boolean mightContain(long high, long low) {
+        long hash = hash(high, low);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(long high, long low) {
+        // finalizer of MurmurHash3
+        long hash = high * 0x9E3779B97F4A7C15L ^ low;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.khasanov.rest.storage;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of transaction positions in ascending order.
+ *
+ * @author Aleksandr Khasanov
+ */
+class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] positions = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Append position. Position must be greater than all positions already in the list.
+     *
+     * @param position position to append
+     */
+    void add(int position) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        positions[size++] = position;
+    }
+
+    /**
+     * Get position by index.
+     *
+     * @param index index of position
+     * @return position
+     */
+    int get(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Get number of positions.
+     *
+     * @return number of positions
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check whether list contains position within index range.
+     *
+     * @param fromIndex first index to search, inclusive
+     * @param toIndex   last index to search, exclusive
+     * @param position  position to find
+     * @return {@code true} if list contains position within passed range
+     */
+    boolean contains(int fromIndex, int toIndex, int position) {
+        return Arrays.binarySearch(positions, fromIndex, toIndex, position) >= 0;
+    }
+
+    /**
+     * Find index of the first position that is greater than passed one.
+     *
+     * @param position position
+     * @return found index. {@link #size()} if all positions are not greater than passed one
+     */
+    int indexAfter(int position) {
+        int index = Arrays.binarySearch(positions, 0, size, position);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}
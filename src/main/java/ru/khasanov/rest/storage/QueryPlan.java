@@ -0,0 +1,119 @@
+package ru.khasanov.rest.storage;
+
+/**
+ * <p>Plan of transactions query chosen by {@link TransactionStorage}.</p>
+ * <p>Plan reads candidate transactions through its access path, and checks every candidate against
+ * all predicates of the query.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public final class QueryPlan {
+
+    /**
+     * Way candidate transactions are read.
+     */
+    public enum AccessPath {
+        /**
+         * Read all transactions.
+         */
+        FULL_SCAN,
+        /**
+         * Read transactions of time period found by binary search.
+         */
+        TIME_RANGE,
+        /**
+         * Read transactions of transmitter.
+         */
+        FROM_POSTINGS,
+        /**
+         * Read transactions of recipient.
+         */
+        TO_POSTINGS,
+        /**
+         * Read transactions present in both transmitter and recipient postings.
+         */
+        POSTINGS_INTERSECTION
+    }
+
+    private final AccessPath accessPath;
+
+    private final long cost;
+
+    private final int estimatedRows;
+
+    // postings driving the plan. null means positions of all transactions
+    final PostingList postings;
+
+    final int fromIndex;
+
+    final int toIndex;
+
+    // postings probed for every driving position by POSTINGS_INTERSECTION
+    final PostingList probe;
+
+    final int probeFromIndex;
+
+    final int probeToIndex;
+
+    final boolean merge;
+
+    QueryPlan(AccessPath accessPath, long cost, int estimatedRows, PostingList postings, int fromIndex, int toIndex) {
+        this(accessPath, cost, estimatedRows, postings, fromIndex, toIndex, null, 0, 0, false);
+    }
+
+    QueryPlan(AccessPath accessPath, long cost, int estimatedRows, PostingList postings, int fromIndex, int toIndex,
+              PostingList probe, int probeFromIndex, int probeToIndex, boolean merge) {
+        this.accessPath = accessPath;
+        this.cost = cost;
+        this.estimatedRows = estimatedRows;
+        this.postings = postings;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.probe = probe;
+        this.probeFromIndex = probeFromIndex;
+        this.probeToIndex = probeToIndex;
+        this.merge = merge;
+    }
+
+    /**
+     * Get access path.
+     *
+     * @return {@link AccessPath}
+     */
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * Get estimated cost of the plan.
+     *
+     * @return estimated cost
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * Get estimated number of transactions read by the plan.
+     *
+     * @return estimated number of read transactions
+     */
+    public int getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * Check whether plan reads a contiguous range of transactions rather than postings.
+     *
+     * @return {@code true} for {@link AccessPath#FULL_SCAN} and {@link AccessPath#TIME_RANGE} plans
+     */
+    public boolean isScan() {
+        return postings == null;
+    }
+
+    @Override
+    public String toString() {
+        return accessPath + (accessPath == AccessPath.POSTINGS_INTERSECTION ? merge ? " merge" : " probe" : "")
+                + " cost=" + cost + " rows=" + estimatedRows;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.khasanov.rest.storage;
+
+import ru.khasanov.rest.model.TransferTransaction;
+
+import java.util.List;
+
+/**
+ * Transactions matching a query together with the plan that read them.
+ *
+ * @author Aleksandr Khasanov
+ */
+public final class QueryResult {
+
+    private final QueryPlan plan;
+
+    private final List<TransferTransaction> transactions;
+
+    /**
+     * Creates new instance of {@link QueryResult}.
+     *
+     * @param plan         executed plan. Must not be {@code null}
+     * @param transactions transactions read by the plan. Must not be {@code null}
+     */
+    public QueryResult(QueryPlan plan, List<TransferTransaction> transactions) {
+        this.plan = plan;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Get executed plan.
+     *
+     * @return {@link QueryPlan}
+     */
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Get transactions matching the query.
+     *
+     * @return {@link List} of transactions. The list may be shared and must not be modified
+     */
+    public List<TransferTransaction> getTransactions() {
+        return transactions;
+    }
+}
@@ -0,0 +1,155 @@
+package ru.khasanov.rest.storage;
+
+import ru.khasanov.rest.model.TransferTransaction;
+
+import java.util.List;
+
+/**
+ * <p>Predicates of {@link TransactionQuery} evaluated over columns of {@link TransactionLog} chunks.</p>
+ * <p>Block of up to {@value #BLOCK_SIZE} transactions is evaluated into a selection bitmap, one bit per transaction.
+ * Evaluation has no branches depending on data: absent predicates are turned into bounds every transaction
+ * satisfies, and results of comparisons are combined with bitwise operations. Only transactions selected by
+ * the bitmap are dereferenced afterwards.</p>
+ * <p>Sealed chunks whose {@link SegmentSummary} rules out the query are skipped without reading their columns.
+ * This prunes time periods outside of the chunk timestamp range and ids absent from chunk Bloom filters,
+ * whether or not transactions were added in order of their timestamps.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+final class ScanKernel {
+
+    static final int BLOCK_SIZE = Long.SIZE;
+
+    private final long minTimestamp;
+
+    private final long maxTimestamp;
+
+    // 0 if transmitter is not specified, so that every transmitter matches
+    private final long fromMask;
+
+    private final long fromHigh;
+
+    private final long fromLow;
+
+    private final long toMask;
+
+    private final long toHigh;
+
+    private final long toLow;
+
+    /**
+     * Creates new instance of {@link ScanKernel}.
+     *
+     * @param query query. Must not be {@code null}
+     */
+    ScanKernel(TransactionQuery query) {
+        minTimestamp = query.getFromTimestamp() != null ? query.getFromTimestamp() : Long.MIN_VALUE;
+        maxTimestamp = query.getToTimestamp() != null ? query.getToTimestamp() : Long.MAX_VALUE;
+
+        fromMask = query.getFromId() != null ? -1L : 0L;
+        fromHigh = query.getFromId() != null ? query.getFromId().getMostSignificantBits() : 0L;
+        fromLow = query.getFromId() != null ? query.getFromId().getLeastSignificantBits() : 0L;
+
+        toMask = query.getToId() != null ? -1L : 0L;
+        toHigh = query.getToId() != null ? query.getToId().getMostSignificantBits() : 0L;
+        toLow = query.getToId() != null ? query.getToId().getLeastSignificantBits() : 0L;
+    }
+
+    /**
+     * Evaluate predicates over block of transactions.
+     *
+     * @param chunk  chunk of transactions. Must not be {@code null}
+     * @param offset offset of the first transaction of the block within chunk
+     * @param count  number of transactions in the block. Must not exceed {@value #BLOCK_SIZE}
+     * @return selection bitmap. Bit {@code i} is set if transaction at {@code offset + i} matches the query
+     */
+    long select(TransactionLog.Chunk chunk, int offset, int count) {
+        long[] timestamps = chunk.timestamps;
+        long[] fromHighs = chunk.fromHigh;
+        long[] fromLows = chunk.fromLow;
+        long[] toHighs = chunk.toHigh;
+        long[] toLows = chunk.toLow;
+
+        long bitmap = 0;
+        for (int i = 0; i < count; i++) {
+            int index = offset + i;
+            long timestamp = timestamps[index];
+
+            // non-zero if id differs from the requested one
+            long fromDiff = ((fromHighs[index] ^ fromHigh) | (fromLows[index] ^ fromLow)) & fromMask;
+            long toDiff = ((toHighs[index] ^ toHigh) | (toLows[index] ^ toLow)) & toMask;
+
+            boolean matches = (timestamp >= minTimestamp) & (timestamp <= maxTimestamp) & ((fromDiff | toDiff) == 0);
+            bitmap |= (matches ? 1L : 0L) << i;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Add transactions matching the query within range of positions to result in order of positions.
+     *
+     * @param log    log of transactions. Must not be {@code null}
+     * @param from   first position, inclusive
+     * @param to     last position, exclusive. Must not exceed size of log observed by the calling thread
+     * @param result list the matching transactions are added to. Must not be {@code null}
+     */
+    void scan(TransactionLog log, int from, int to, List<TransferTransaction> result) {
+        int position = from;
+        while (position < to) {
+            TransactionLog.Chunk chunk = log.chunk(position);
+            int offset = TransactionLog.offset(position);
+            int end = offset + Math.min(to - position, TransactionLog.CHUNK_SIZE - offset);
+            position += end - offset;
+
+            if (!mayMatch(chunk.summary)) {
+                continue;
+            }
+
+            for (int block = offset; block < end; block += BLOCK_SIZE) {
+                long bitmap = select(chunk, block, Math.min(BLOCK_SIZE, end - block));
+                while (bitmap != 0) {
+                    TransferTransaction transaction = chunk.transactions[block + Long.numberOfTrailingZeros(bitmap)];
+                    // released transactions keep their columns
+                    if (transaction != null) {
+                        result.add(transaction);
+                    }
+                    bitmap &= bitmap - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count transactions within range of positions that are not in segments ruled out by their summaries.
+     *
+     * @param log  log of transactions. Must not be {@code null}
+     * @param from first position, inclusive
+     * @param to   last position, exclusive. Must not exceed size of log observed by the calling thread
+     * @return number of transactions a scan of the range reads
+     */
+    int countCandidates(TransactionLog log, int from, int to) {
+        int count = 0;
+        int position = from;
+        while (position < to) {
+            int length = Math.min(to - position, TransactionLog.CHUNK_SIZE - TransactionLog.offset(position));
+            if (mayMatch(log.chunk(position).summary)) {
+                count += length;
+            }
+            position += length;
+        }
+        return count;
+    }
+
+    /**
+     * Check whether segment may contain transactions matching the query.
+     *
+     * @param summary summary of segment. In case of {@code null} value segment is not summarized yet
+     * @return {@code false} if segment certainly has no matching transactions
+     */
+    boolean mayMatch(SegmentSummary summary) {
+        return summary == null
+                || summary.maxTimestamp >= minTimestamp && summary.minTimestamp <= maxTimestamp
+                && (fromMask == 0 || summary.fromIds.mightContain(fromHigh, fromLow))
+                && (toMask == 0 || summary.toIds.mightContain(toHigh, toLow));
+    }
+}
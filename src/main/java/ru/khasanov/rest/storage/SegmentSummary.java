@@ -0,0 +1,46 @@
+package ru.khasanov.rest.storage;
+
+/**
+ * <p>Summary of a sealed segment of transactions: range of timestamps and Bloom filters of transmitter and
+ * recipient ids. It is used to skip segments that cannot contain transactions matching a query.</p>
+ * <p>Summary is built incrementally by the thread appending transactions to the segment and must not be
+ * read by other threads until the segment is sealed.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+final class SegmentSummary {
+
+    long minTimestamp = Long.MAX_VALUE;
+
+    long maxTimestamp = Long.MIN_VALUE;
+
+    final BloomFilter fromIds;
+
+    final BloomFilter toIds;
+
+    /**
+     * Creates empty summary.
+     *
+     * @param capacity expected number of transactions. Must be positive
+     */
+    SegmentSummary(int capacity) {
+        fromIds = new BloomFilter(capacity);
+        toIds = new BloomFilter(capacity);
+    }
+
+    /**
+     * Add transaction given by its columns.
+     *
+     * @param timestamp timestamp of transaction
+     * @param fromHigh  most significant bits of transmitter id
+     * @param fromLow   least significant bits of transmitter id
+     * @param toHigh    most significant bits of recipient id
+     * @param toLow     least significant bits of recipient id
+     */
+    void add(long timestamp, long fromHigh, long fromLow, long toHigh, long toLow) {
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        fromIds.add(fromHigh, fromLow);
+        toIds.add(toHigh, toLow);
+    }
+}
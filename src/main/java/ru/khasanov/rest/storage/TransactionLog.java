@@ -0,0 +1,166 @@
+package ru.khasanov.rest.storage;
+
+import ru.khasanov.rest.model.TransferTransaction;
+
+import java.util.Arrays;
+
+/**
+ * <p>Append-only list of transactions stored in chunks of {@value #CHUNK_SIZE} transactions.</p>
+ * <p>Chunks are never moved or reallocated, so appending never copies stored transactions. Transactions are
+ * appended by one thread at a time, while any number of threads may read transactions below {@link #size()}
+ * they have observed, without locks and without copying the list.</p>
+ * <p>Besides transactions every chunk keeps their ids and timestamps in primitive arrays, so scans evaluate
+ * predicates over contiguous memory without dereferencing transactions, see {@link ScanKernel}.
+ * Every chunk builds its {@link SegmentSummary} as transactions are appended and publishes it once full,
+ * so scans can skip chunks that cannot match and appending never stops to summarize a whole chunk.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class TransactionLog {
+
+    static final int CHUNK_SIZE = 1 << 14;
+
+    private static final int CHUNK_BITS = 14;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Chunk[] chunks = new Chunk[1];
+
+    private volatile int size;
+
+    /**
+     * Append transaction. Must be called by one thread at a time.
+     *
+     * @param transaction transaction. Must not be {@code null}
+     * @return position of appended transaction
+     */
+    int add(TransferTransaction transaction) {
+        int position = size;
+        int chunk = position >>> CHUNK_BITS;
+
+        Chunk[] current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Chunk();
+            // chunk is published before size, so readers of the new size see it
+            chunks = current;
+        }
+
+        current[chunk].set(position & CHUNK_MASK, transaction);
+        if ((position & CHUNK_MASK) == CHUNK_MASK) {
+            current[chunk].seal();
+        }
+        size = position + 1;
+        return position;
+    }
+
+    /**
+     * Release transaction, so that it is no longer returned by the log. Its position stays taken.
+     * Must be called by the thread appending transactions.
+     *
+     * @param position position of transaction. Must be below {@link #size()}
+     */
+    void remove(int position) {
+        chunks[position >>> CHUNK_BITS].transactions[position & CHUNK_MASK] = null;
+    }
+
+    /**
+     * Get transaction by position. Position must be below {@link #size()} observed by the calling thread.
+     *
+     * @param position position of transaction
+     * @return transaction. {@code null} if transaction was released
+     */
+    public TransferTransaction get(int position) {
+        return chunks[position >>> CHUNK_BITS].transactions[position & CHUNK_MASK];
+    }
+
+    /**
+     * Get timestamp of transaction by position, including released transactions.
+     * Position must be below {@link #size()} observed by the calling thread.
+     *
+     * @param position position of transaction
+     * @return timestamp of transaction
+     */
+    public long getTimestamp(int position) {
+        return chunks[position >>> CHUNK_BITS].timestamps[position & CHUNK_MASK];
+    }
+
+    /**
+     * Get chunk holding position. Position must be below {@link #size()} observed by the calling thread.
+     *
+     * @param position position of transaction
+     * @return chunk
+     */
+    Chunk chunk(int position) {
+        return chunks[position >>> CHUNK_BITS];
+    }
+
+    /**
+     * Get offset of position within its chunk.
+     *
+     * @param position position of transaction
+     * @return offset
+     */
+    static int offset(int position) {
+        return position & CHUNK_MASK;
+    }
+
+    /**
+     * Get number of appended transactions.
+     *
+     * @return number of transactions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether log is empty.
+     *
+     * @return {@code true} if no transactions were appended
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Transactions of one chunk together with columns of their fields.
+     */
+    static final class Chunk {
+
+        final TransferTransaction[] transactions = new TransferTransaction[CHUNK_SIZE];
+
+        final long[] timestamps = new long[CHUNK_SIZE];
+
+        final long[] fromHigh = new long[CHUNK_SIZE];
+
+        final long[] fromLow = new long[CHUNK_SIZE];
+
+        final long[] toHigh = new long[CHUNK_SIZE];
+
+        final long[] toLow = new long[CHUNK_SIZE];
+
+        // null until chunk is full
+        volatile SegmentSummary summary;
+
+        // summary being built by the appending thread, null once published
+        private SegmentSummary pendingSummary = new SegmentSummary(CHUNK_SIZE);
+
+        private void set(int offset, TransferTransaction transaction) {
+            timestamps[offset] = transaction.getTimestamp();
+            fromHigh[offset] = transaction.getFrom().getMostSignificantBits();
+            fromLow[offset] = transaction.getFrom().getLeastSignificantBits();
+            toHigh[offset] = transaction.getTo().getMostSignificantBits();
+            toLow[offset] = transaction.getTo().getLeastSignificantBits();
+            transactions[offset] = transaction;
+            pendingSummary.add(timestamps[offset], fromHigh[offset], fromLow[offset], toHigh[offset], toLow[offset]);
+        }
+
+        private void seal() {
+            summary = pendingSummary;
+            pendingSummary = null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ru.khasanov.rest.storage;
+
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.provider.Uuids;
+import ru.khasanov.rest.resource.TransactionsRequestParameters;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Parsed predicates of transactions query.
+ *
+ * @author Aleksandr Khasanov
+ */
+public final class TransactionQuery {
+
+    private final UUID fromId;
+
+    private final UUID toId;
+
+    private final Long fromTimestamp;
+
+    private final Long toTimestamp;
+
+    /**
+     * Creates new instance of {@link TransactionQuery}.
+     *
+     * @param fromId        transmitter id. In case of {@code null} value transactions of all transmitters match
+     * @param toId          recipient id. In case of {@code null} value transactions of all recipients match
+     * @param fromTimestamp beginning of time period. In case of {@code null} value period is not bounded
+     * @param toTimestamp   ending of time period. In case of {@code null} value period is not bounded
+     */
+    public TransactionQuery(UUID fromId, UUID toId, Long fromTimestamp, Long toTimestamp) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+    }
+
+    /**
+     * Parse query from query parameters. Parameters that are not supported are ignored.
+     *
+     * @param queryParameters map of query parameters. Must not be {@code null}
+     * @return parsed {@link TransactionQuery}
+     * @throws IllegalArgumentException if id or timestamp has invalid format
+     */
+    public static TransactionQuery parse(MultivaluedMap<String, String> queryParameters) {
+        String fromIdString = queryParameters.getFirst(TransactionsRequestParameters.FROM_ID);
+        String toIdString = queryParameters.getFirst(TransactionsRequestParameters.TO_ID);
+        String fromTimestampString = queryParameters.getFirst(TransactionsRequestParameters.FROM_DATE);
+        String toTimestampString = queryParameters.getFirst(TransactionsRequestParameters.TO_DATE);
+
+        return new TransactionQuery(
+                isEmpty(fromIdString) ? null : Uuids.parse(fromIdString),
+                isEmpty(toIdString) ? null : Uuids.parse(toIdString),
+                isEmpty(fromTimestampString) ? null : Long.valueOf(fromTimestampString),
+                isEmpty(toTimestampString) ? null : Long.valueOf(toTimestampString));
+    }
+
+    /**
+     * Get transmitter id.
+     *
+     * @return transmitter id. {@code null} if not specified
+     */
+    public UUID getFromId() {
+        return fromId;
+    }
+
+    /**
+     * Get recipient id.
+     *
+     * @return recipient id. {@code null} if not specified
+     */
+    public UUID getToId() {
+        return toId;
+    }
+
+    /**
+     * Get beginning of time period.
+     *
+     * @return beginning of time period. {@code null} if not specified
+     */
+    public Long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    /**
+     * Get ending of time period.
+     *
+     * @return ending of time period. {@code null} if not specified
+     */
+    public Long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    /**
+     * Check whether transaction matches all predicates of the query.
+     *
+     * @param transaction transaction to check. Must not be {@code null}
+     * @return {@code true} if transaction matches the query
+     */
+    public boolean matches(TransferTransaction transaction) {
+        return (fromId == null || fromId.equals(transaction.getFrom()))
+                && (toId == null || toId.equals(transaction.getTo()))
+                && (fromTimestamp == null || fromTimestamp <= transaction.getTimestamp())
+                && (toTimestamp == null || transaction.getTimestamp() <= toTimestamp);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TransactionQuery that = (TransactionQuery) o;
+
+        return Objects.equals(fromId, that.fromId)
+                && Objects.equals(toId, that.toId)
+                && Objects.equals(fromTimestamp, that.fromTimestamp)
+                && Objects.equals(toTimestamp, that.toTimestamp);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromId, toId, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public String toString() {
+        return TransactionsRequestParameters.FROM_ID + "=" + (fromId == null ? "" : fromId)
+                + "&" + TransactionsRequestParameters.TO_ID + "=" + (toId == null ? "" : toId)
+                + "&" + TransactionsRequestParameters.FROM_DATE + "=" + (fromTimestamp == null ? "" : fromTimestamp)
+                + "&" + TransactionsRequestParameters.TO_DATE + "=" + (toTimestamp == null ? "" : toTimestamp);
+    }
+}
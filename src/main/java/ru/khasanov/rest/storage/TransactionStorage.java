@@ -1,14 +1,22 @@
 package ru.khasanov.rest.storage;
 
 import ru.khasanov.rest.model.TransferTransaction;
-import ru.khasanov.rest.resource.TransactionsRequestParameters;
 
 import javax.ws.rs.core.MultivaluedMap;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * In-memory storage for transfer transactions.
@@ -17,20 +25,270 @@ import java.util.stream.Stream;
  */
 public class TransactionStorage {
 
-    private List<TransferTransaction> transactions = new ArrayList<>();
+    // cost of reading transaction relative to a step of binary search or postings merge
+    static final int ROW_COST = 4;
+
+    // number of transactions read by one task of parallel scan
+    static final int SCAN_SEGMENT_SIZE = 8 * 1024;
+
+    private static final PostingList EMPTY_POSTINGS = new PostingList();
+
+    private final TransactionLog transactions = new TransactionLog();
+
+    private Map<UUID, PostingList> fromPostings = new HashMap<>();
+
+    private Map<UUID, PostingList> toPostings = new HashMap<>();
+
+    private Map<UUID, BalanceCheckpoints> checkpoints = new HashMap<>();
+
+    // accounts whose postings were purged and that have not taken part in transactions since
+    private Set<UUID> purgedAccounts = new HashSet<>();
+
+    // whether transactions are added in order of their timestamps, so time period can be found with binary search
+    private boolean timeOrdered = true;
+
+    private volatile long version;
+
+    private volatile long compactionEpoch;
 
     /**
      * Add transaction to storage.
      *
      * @param transaction transaction to be added. Must not be {@code null}
+     * @return position of added transaction in storage. {@code -1} if transaction was not added
      */
-    public void addTransaction(TransferTransaction transaction) {
+    public int addTransaction(TransferTransaction transaction) {
         UUID from = transaction.getFrom();
         UUID to = transaction.getTo();
 
-        if (!from.equals(to)) {
-            transactions.add(transaction);
+        if (from.equals(to)) {
+            return -1;
+        }
+
+        if (!transactions.isEmpty()
+                && transaction.getTimestamp() < transactions.getTimestamp(transactions.size() - 1)) {
+            timeOrdered = false;
+        }
+
+        if (!purgedAccounts.isEmpty()) {
+            // account was created again
+            purgedAccounts.remove(from);
+            purgedAccounts.remove(to);
         }
+
+        int position = transactions.add(transaction);
+        fromPostings.computeIfAbsent(from, id -> new PostingList()).add(position);
+        toPostings.computeIfAbsent(to, id -> new PostingList()).add(position);
+        checkpoints.computeIfAbsent(from, id -> new BalanceCheckpoints()).add(position, transaction.getAmount().negate());
+        checkpoints.computeIfAbsent(to, id -> new BalanceCheckpoints()).add(position, transaction.getAmount());
+        version++;
+        return position;
+    }
+
+    /**
+     * Get ledger version. Version changes every time transaction is added and every time history is compacted.
+     *
+     * @return ledger version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get compaction epoch. Epoch changes every time a run of history compaction is finished, and only then,
+     * so results of queries over time periods that ended in the past stay the same within an epoch.
+     *
+     * @return compaction epoch
+     */
+    public long getCompactionEpoch() {
+        return compactionEpoch;
+    }
+
+    /**
+     * Start new compaction epoch once history compaction has finished releasing transactions.
+     */
+    public void advanceCompactionEpoch() {
+        compactionEpoch++;
+    }
+
+    /**
+     * Get number of stored transactions.
+     *
+     * @return number of stored transactions
+     */
+    public int size() {
+        return transactions.size();
+    }
+
+    /**
+     * Get log of all transactions in order of addition. Transactions below size of log observed by a thread
+     * can be read by that thread while new transactions are added.
+     *
+     * @return {@link TransactionLog}
+     */
+    public TransactionLog getTransactionLog() {
+        return transactions;
+    }
+
+    /**
+     * Get positions of all transactions of account in ascending order.
+     *
+     * @param userId user id. Must not be {@code null}
+     * @return array of positions. Empty if account has no transactions or its postings were purged
+     */
+    public int[] getAccountPositions(UUID userId) {
+        PostingList from = fromPostings.getOrDefault(userId, EMPTY_POSTINGS);
+        PostingList to = toPostings.getOrDefault(userId, EMPTY_POSTINGS);
+
+        int[] positions = new int[from.size() + to.size()];
+        int fromIndex = 0;
+        int toIndex = 0;
+        int count = 0;
+        while (fromIndex < from.size() || toIndex < to.size()) {
+            if (toIndex == to.size() || fromIndex < from.size() && from.get(fromIndex) < to.get(toIndex)) {
+                positions[count++] = from.get(fromIndex++);
+            } else {
+                // transaction the account both transmitted and received is taken once
+                if (fromIndex < from.size() && from.get(fromIndex) == to.get(toIndex)) {
+                    fromIndex++;
+                }
+                positions[count++] = to.get(toIndex++);
+            }
+        }
+        return count == positions.length ? positions : Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * <p>Get page of account history, i.e. transactions the account transmitted or received, newest first.</p>
+     * <p>Postings of the account are merged from their ends, so the page is collected in
+     * {@code O(offset + count)} time regardless of the size of the log.</p>
+     *
+     * @param userId user id. Must not be {@code null}
+     * @param offset number of the newest transactions to skip. Must not be negative
+     * @param count  maximum number of transactions to return. Must not be negative
+     * @return {@link List} of transactions in descending order of positions
+     */
+    public List<TransferTransaction> getAccountHistory(UUID userId, int offset, int count) {
+        PostingList from = fromPostings.getOrDefault(userId, EMPTY_POSTINGS);
+        PostingList to = toPostings.getOrDefault(userId, EMPTY_POSTINGS);
+
+        List<TransferTransaction> result = new ArrayList<>(Math.min(count, from.size() + to.size()));
+        int fromIndex = from.size() - 1;
+        int toIndex = to.size() - 1;
+        int skipped = 0;
+        while (result.size() < count && (fromIndex >= 0 || toIndex >= 0)) {
+            int position;
+            if (toIndex < 0 || fromIndex >= 0 && from.get(fromIndex) > to.get(toIndex)) {
+                position = from.get(fromIndex--);
+            } else {
+                // transaction the account both transmitted and received is listed once
+                if (fromIndex >= 0 && from.get(fromIndex) == to.get(toIndex)) {
+                    fromIndex--;
+                }
+                position = to.get(toIndex--);
+            }
+
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(transactions.get(position));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Purge postings and balance checkpoints of deleted account.</p>
+     * <p>Transactions of the account are no longer found by its id and are released by
+     * {@link #releaseTransactions(int[], int, int)} once the other party is purged as well.
+     * Account takes part in transactions as usual if it is created again.</p>
+     *
+     * @param userId user id. Must not be {@code null}
+     */
+    public void purgeAccount(UUID userId) {
+        fromPostings.remove(userId);
+        toPostings.remove(userId);
+        checkpoints.remove(userId);
+        purgedAccounts.add(userId);
+        version++;
+    }
+
+    /**
+     * Release transactions whose transmitter and recipient are both purged, so that they no longer take memory
+     * and are skipped by scans. Positions of released transactions stay taken.
+     *
+     * @param positions positions of transactions. Must not be {@code null}
+     * @param fromIndex first index of positions to release, inclusive
+     * @param toIndex   last index of positions to release, exclusive
+     * @return number of released transactions
+     */
+    public int releaseTransactions(int[] positions, int fromIndex, int toIndex) {
+        int released = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            TransferTransaction transaction = transactions.get(positions[i]);
+            if (transaction != null
+                    && purgedAccounts.contains(transaction.getFrom()) && purgedAccounts.contains(transaction.getTo())) {
+                transactions.remove(positions[i]);
+                released++;
+            }
+        }
+
+        if (released > 0) {
+            version++;
+        }
+        return released;
+    }
+
+    /**
+     * <p>Get amounts received by account minus amounts transmitted by it up to passed time, inclusive,
+     * counting only transactions at or after passed position.</p>
+     * <p>While transactions are added in order of their timestamps, the latest checkpoint before passed time
+     * is found with binary search and at most {@value BalanceCheckpoints#INTERVAL} transactions added after it
+     * are replayed, regardless of the length of account history. Net flow before passed position is taken
+     * from checkpoints the same way. Otherwise all transactions of account after passed position
+     * are replayed.</p>
+     *
+     * @param userId       user id. Must not be {@code null}
+     * @param fromPosition first position counted, e.g. opening position of account. Must not be negative
+     * @param timestamp    time in milliseconds
+     * @return net flow of account
+     */
+    public BigDecimal getNetFlow(UUID userId, int fromPosition, long timestamp) {
+        PostingList from = fromPostings.getOrDefault(userId, EMPTY_POSTINGS);
+        PostingList to = toPostings.getOrDefault(userId, EMPTY_POSTINGS);
+        int fromStart = from.indexAfter(fromPosition - 1);
+        int toStart = to.indexAfter(fromPosition - 1);
+
+        if (!timeOrdered) {
+            return replay(to, toStart, timestamp).subtract(replay(from, fromStart, timestamp));
+        }
+
+        BalanceCheckpoints accountCheckpoints = checkpoints.get(userId);
+        if (accountCheckpoints == null) {
+            return BigDecimal.ZERO;
+        }
+
+        // the first checkpoint after passed time
+        int low = 0;
+        int high = accountCheckpoints.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (transactions.getTimestamp(accountCheckpoints.getPosition(middle)) <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        if (low == 0 || accountCheckpoints.getPosition(low - 1) < fromPosition) {
+            return replay(to, toStart, timestamp).subtract(replay(from, fromStart, timestamp));
+        }
+
+        int position = accountCheckpoints.getPosition(low - 1);
+        return accountCheckpoints.getNetFlow(low - 1)
+                .subtract(getNetFlowBefore(accountCheckpoints, from, to, fromPosition))
+                .add(replay(to, to.indexAfter(position), timestamp))
+                .subtract(replay(from, from.indexAfter(position), timestamp));
     }
 
     /**
@@ -48,33 +306,338 @@ public class TransactionStorage {
      * @return {@link List} of transactions that match passed query parameters.
      */
     public List<TransferTransaction> getTransactions(MultivaluedMap<String, String> queryParameters) {
-        Stream<TransferTransaction> transferTransactionStream = transactions.stream();
+        return getTransactions(TransactionQuery.parse(queryParameters));
+    }
+
+    /**
+     * Get list of transactions that match query, read with the cheapest plan.
+     *
+     * @param query query. Must not be {@code null}
+     * @return {@link List} of transactions that match passed query in order of addition
+     */
+    public List<TransferTransaction> getTransactions(TransactionQuery query) {
+        return getTransactions(query, plan(query));
+    }
 
-        String fromIdString = queryParameters.getFirst(TransactionsRequestParameters.FROM_ID);
-        if (fromIdString != null && !fromIdString.isEmpty()) {
-            final UUID fromId = UUID.fromString(fromIdString);
-            transferTransactionStream = transferTransactionStream.filter(p -> fromId.equals(p.getFrom()));
+    /**
+     * Get list of transactions that match query, read with passed plan.
+     *
+     * @param query query. Must not be {@code null}
+     * @param plan  plan of the query made by {@link #plan(TransactionQuery)}. Must not be {@code null}
+     * @return {@link List} of transactions that match passed query in order of addition
+     */
+    public List<TransferTransaction> getTransactions(TransactionQuery query, QueryPlan plan) {
+        List<TransferTransaction> result = new ArrayList<>();
+
+        if (plan.getAccessPath() == QueryPlan.AccessPath.POSTINGS_INTERSECTION) {
+            int probeIndex = plan.probeFromIndex;
+
+            for (int i = plan.fromIndex; i < plan.toIndex && probeIndex < plan.probeToIndex; i++) {
+                int position = plan.postings.get(i);
+
+                if (plan.merge) {
+                    while (probeIndex < plan.probeToIndex && plan.probe.get(probeIndex) < position) {
+                        probeIndex++;
+                    }
+                    if (probeIndex == plan.probeToIndex || plan.probe.get(probeIndex) != position) {
+                        continue;
+                    }
+                } else if (!plan.probe.contains(plan.probeFromIndex, plan.probeToIndex, position)) {
+                    continue;
+                }
+
+                addIfMatches(result, position, query);
+            }
+            return result;
+        }
+
+        if (plan.isScan()) {
+            new ScanKernel(query).scan(transactions, plan.fromIndex, plan.toIndex, result);
+            return result;
+        }
+
+        for (int i = plan.fromIndex; i < plan.toIndex; i++) {
+            addIfMatches(result, plan.postings.get(i), query);
+        }
+        return result;
+    }
+
+    /**
+     * <p>Read transactions that match query with scan plan in parallel.</p>
+     * <p>Range of plan is split into segments of {@value #SCAN_SEGMENT_SIZE} transactions scanned by tasks of
+     * passed pool, and results of segments are concatenated in order of addition. Plan fixes the range, so
+     * the scan reads only transactions that were added before the plan was made and may run on any thread
+     * while new transactions are added.</p>
+     * <p>Segments that are not scanned yet are skipped once the returned task is cancelled.</p>
+     *
+     * @param query query. Must not be {@code null}
+     * @param plan  plan of the query with {@link QueryPlan#isScan()}. Must not be {@code null}
+     * @param pool  pool running the scan. Must not be {@code null}
+     * @return submitted task providing {@link List} of transactions that match passed query in order of addition
+     */
+    public ForkJoinTask<List<TransferTransaction>> scanInParallel(TransactionQuery query, QueryPlan plan,
+                                                                   ForkJoinPool pool) {
+        if (!plan.isScan()) {
+            throw new IllegalArgumentException("Plan does not scan transactions: " + plan);
+        }
+
+        return pool.submit(new ParallelScan(new ScanKernel(query), plan));
+    }
+
+    /**
+     * <p>Choose the cheapest plan of query.</p>
+     * <p>Candidate plans are full scan, time period slice, postings of transmitter or recipient and
+     * intersection of both postings. Postings are sliced by time period as well. Time period is located
+     * with binary search, which is possible while transactions are added in order of their timestamps.</p>
+     * <p>Cost of plan is estimated from exact sizes of postings and time period slices: every read transaction
+     * costs {@value #ROW_COST}, every step of binary search or postings merge costs 1. Full scan reads only
+     * segments that their summaries do not rule out, and checking summary of a segment costs 1. Summaries are
+     * checked only when full scan could be cheaper than the other plans.</p>
+     *
+     * @param query query. Must not be {@code null}
+     * @return the cheapest {@link QueryPlan}
+     */
+    public QueryPlan plan(TransactionQuery query) {
+        int size = transactions.size();
+
+        QueryPlan best = null;
+        if (timeOrdered && timeBounds(query) > 0) {
+            int from = timestampIndex(null, 0, size, query.getFromTimestamp(), false);
+            int to = Math.max(from, timestampIndex(null, from, size, query.getToTimestamp(), true));
+            best = new QueryPlan(QueryPlan.AccessPath.TIME_RANGE,
+                    timeBounds(query) * searchCost(size) + (long) (to - from) * ROW_COST, to - from, null, from, to);
+        }
+
+        QueryPlan fromPlan = null;
+        if (query.getFromId() != null) {
+            fromPlan = postingsPlan(QueryPlan.AccessPath.FROM_POSTINGS, fromPostings.get(query.getFromId()), query);
+            best = best != null ? cheapest(best, fromPlan) : fromPlan;
+        }
+
+        QueryPlan toPlan = null;
+        if (query.getToId() != null) {
+            toPlan = postingsPlan(QueryPlan.AccessPath.TO_POSTINGS, toPostings.get(query.getToId()), query);
+            best = best != null ? cheapest(best, toPlan) : toPlan;
+        }
+
+        if (fromPlan != null && toPlan != null) {
+            QueryPlan driving = fromPlan.getEstimatedRows() <= toPlan.getEstimatedRows() ? fromPlan : toPlan;
+            QueryPlan probed = driving == fromPlan ? toPlan : fromPlan;
+
+            long drivingRows = driving.getEstimatedRows();
+            long probedRows = probed.getEstimatedRows();
+            long mergeCost = drivingRows + probedRows;
+            long probeCost = drivingRows * searchCost(probedRows);
+            // assume that transmitter and recipient are independent
+            int rows = size == 0 ? 0 : (int) Math.min(drivingRows, drivingRows * probedRows / size + 1);
+
+            best = cheapest(best, new QueryPlan(QueryPlan.AccessPath.POSTINGS_INTERSECTION,
+                    driving.getCost() - drivingRows * ROW_COST + probed.getCost() - probedRows * ROW_COST
+                            + Math.min(mergeCost, probeCost) + (long) rows * ROW_COST, rows,
+                    driving.postings, driving.fromIndex, driving.toIndex,
+                    probed.postings, probed.fromIndex, probed.toIndex, mergeCost <= probeCost));
+        }
+
+        // segments are counted only if full scan can win even when summaries rule out every sealed segment
+        long sealedSegments = size / TransactionLog.CHUNK_SIZE;
+        long minScanCost = (long) TransactionLog.offset(size) * ROW_COST + sealedSegments;
+        if (best == null || best.getCost() >= minScanCost) {
+            int scanned = new ScanKernel(query).countCandidates(transactions, 0, size);
+            QueryPlan fullScan = new QueryPlan(QueryPlan.AccessPath.FULL_SCAN,
+                    (long) scanned * ROW_COST + sealedSegments, scanned, null, 0, size);
+            best = best != null ? cheapest(fullScan, best) : fullScan;
+        }
+
+        return best;
+    }
+
+    private QueryPlan postingsPlan(QueryPlan.AccessPath accessPath, PostingList postings, TransactionQuery query) {
+        if (postings == null) {
+            return new QueryPlan(accessPath, 0, 0, EMPTY_POSTINGS, 0, 0);
+        }
+
+        int size = postings.size();
+        if (!timeOrdered) {
+            return new QueryPlan(accessPath, (long) size * ROW_COST, size, postings, 0, size);
+        }
+
+        int from = timestampIndex(postings, 0, size, query.getFromTimestamp(), false);
+        int to = Math.max(from, timestampIndex(postings, from, size, query.getToTimestamp(), true));
+        return new QueryPlan(accessPath, timeBounds(query) * searchCost(size) + (long) (to - from) * ROW_COST,
+                to - from, postings, from, to);
+    }
+
+    private static int timeBounds(TransactionQuery query) {
+        return (query.getFromTimestamp() != null ? 1 : 0) + (query.getToTimestamp() != null ? 1 : 0);
+    }
+
+    /**
+     * Find the first index within range whose transaction timestamp is after bound.
+     * Transactions must be ordered by timestamps.
+     *
+     * @param postings  postings to search. In case of {@code null} value positions of all transactions are searched
+     * @param fromIndex first index to search, inclusive
+     * @param toIndex   last index to search, exclusive
+     * @param timestamp bound. In case of {@code null} value range is not bounded
+     * @param inclusive whether transactions with timestamp equal to bound are before it
+     * @return found index
+     */
+    private int timestampIndex(PostingList postings, int fromIndex, int toIndex, Long timestamp, boolean inclusive) {
+        if (timestamp == null) {
+            return inclusive ? toIndex : fromIndex;
+        }
+
+        int low = fromIndex;
+        int high = toIndex;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long middleTimestamp = transactions.getTimestamp(postings == null ? middle : postings.get(middle));
+
+            if (middleTimestamp < timestamp || inclusive && middleTimestamp == timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private BigDecimal getNetFlowBefore(BalanceCheckpoints accountCheckpoints, PostingList from, PostingList to,
+                                        int position) {
+        // the first checkpoint at or after passed position
+        int low = 0;
+        int high = accountCheckpoints.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (accountCheckpoints.getPosition(middle) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
 
-        String toIdString = queryParameters.getFirst(TransactionsRequestParameters.TO_ID);
-        if (toIdString != null && !toIdString.isEmpty()) {
-            final UUID toId = UUID.fromString(toIdString);
-            transferTransactionStream = transferTransactionStream.filter(p -> toId.equals(p.getTo()));
+        int checkpointPosition = low > 0 ? accountCheckpoints.getPosition(low - 1) : -1;
+        BigDecimal netFlow = low > 0 ? accountCheckpoints.getNetFlow(low - 1) : BigDecimal.ZERO;
+        return netFlow
+                .add(sum(to, to.indexAfter(checkpointPosition), to.indexAfter(position - 1)))
+                .subtract(sum(from, from.indexAfter(checkpointPosition), from.indexAfter(position - 1)));
+    }
+
+    private BigDecimal sum(PostingList postings, int fromIndex, int toIndex) {
+        BigDecimal amount = BigDecimal.ZERO;
+        for (int i = fromIndex; i < toIndex; i++) {
+            amount = amount.add(transactions.get(postings.get(i)).getAmount());
         }
+        return amount;
+    }
 
-        String fromTimestampString = queryParameters.getFirst(TransactionsRequestParameters.FROM_DATE);
-        if (fromTimestampString != null && !fromTimestampString.isEmpty()) {
-            final long fromTimestamp = Long.valueOf(fromTimestampString);
-            transferTransactionStream = transferTransactionStream.filter(p -> fromTimestamp <= p.getTimestamp());
+    private BigDecimal replay(PostingList postings, int fromIndex, long timestamp) {
+        BigDecimal amount = BigDecimal.ZERO;
+        for (int i = fromIndex; i < postings.size(); i++) {
+            TransferTransaction transaction = transactions.get(postings.get(i));
+            if (transaction.getTimestamp() <= timestamp) {
+                amount = amount.add(transaction.getAmount());
+            } else if (timeOrdered) {
+                break;
+            }
         }
+        return amount;
+    }
+
+    private void addIfMatches(List<TransferTransaction> result, int position, TransactionQuery query) {
+        TransferTransaction transaction = transactions.get(position);
+        if (query.matches(transaction)) {
+            result.add(transaction);
+        }
+    }
+
+    private class ParallelScan extends RecursiveTask<List<TransferTransaction>> {
+
+        private final ScanKernel kernel;
 
-        String toTimestampString = queryParameters.getFirst(TransactionsRequestParameters.TO_DATE);
-        if (toTimestampString != null && !toTimestampString.isEmpty()) {
+        private final QueryPlan plan;
 
-            final long toTimestamp = Long.valueOf(toTimestampString);
-            transferTransactionStream = transferTransactionStream.filter(p -> p.getTimestamp() <= toTimestamp);
+        ParallelScan(ScanKernel kernel, QueryPlan plan) {
+            this.kernel = kernel;
+            this.plan = plan;
         }
 
-        return transferTransactionStream.collect(Collectors.toList());
+        @Override
+        protected List<TransferTransaction> compute() {
+            int segments = (plan.toIndex - plan.fromIndex + SCAN_SEGMENT_SIZE - 1) / SCAN_SEGMENT_SIZE;
+            @SuppressWarnings("unchecked")
+            List<TransferTransaction>[] parts = new List[segments];
+
+            if (segments > 0) {
+                new ScanTask(this, kernel, plan, parts, 0, segments).invoke();
+            }
+            if (isCancelled()) {
+                // result of cancelled task is never read
+                return Collections.emptyList();
+            }
+
+            int size = 0;
+            for (List<TransferTransaction> part : parts) {
+                size += part.size();
+            }
+            List<TransferTransaction> result = new ArrayList<>(size);
+            for (List<TransferTransaction> part : parts) {
+                result.addAll(part);
+            }
+            return result;
+        }
+    }
+
+    private class ScanTask extends RecursiveAction {
+
+        private final ParallelScan scan;
+
+        private final ScanKernel kernel;
+
+        private final QueryPlan plan;
+
+        private final List<TransferTransaction>[] parts;
+
+        private final int fromSegment;
+
+        private final int toSegment;
+
+        ScanTask(ParallelScan scan, ScanKernel kernel, QueryPlan plan, List<TransferTransaction>[] parts,
+                 int fromSegment, int toSegment) {
+            this.scan = scan;
+            this.kernel = kernel;
+            this.plan = plan;
+            this.parts = parts;
+            this.fromSegment = fromSegment;
+            this.toSegment = toSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (scan.isCancelled()) {
+                return;
+            }
+
+            if (toSegment - fromSegment > 1) {
+                int middle = (fromSegment + toSegment) >>> 1;
+                invokeAll(new ScanTask(scan, kernel, plan, parts, fromSegment, middle),
+                        new ScanTask(scan, kernel, plan, parts, middle, toSegment));
+                return;
+            }
+
+            int from = plan.fromIndex + fromSegment * SCAN_SEGMENT_SIZE;
+            int to = Math.min(plan.toIndex, from + SCAN_SEGMENT_SIZE);
+            List<TransferTransaction> part = new ArrayList<>();
+            kernel.scan(transactions, from, to, part);
+            parts[fromSegment] = part;
+        }
+    }
+
+    private static QueryPlan cheapest(QueryPlan plan, QueryPlan other) {
+        return other.getCost() < plan.getCost() ? other : plan;
+    }
+
+    private static long searchCost(long size) {
+        return 64 - Long.numberOfLeadingZeros(size);
     }
 }
@@ -0,0 +1,119 @@
+package ru.khasanov.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.storage.QueryPlan;
+import ru.khasanov.rest.storage.TransactionLog;
+import ru.khasanov.rest.storage.TransactionQuery;
+import ru.khasanov.rest.storage.TransactionStorage;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>JMH benchmark of single-threaded transaction scans.</p>
+ * <p>Compares predicates evaluated over columns into selection bitmaps ({@code columnar*}) with predicates
+ * evaluated on every transaction object ({@code rowwise*}). Every operation scans {@value #TRANSACTIONS}
+ * transactions with time period predicate and with time period and transmitter predicates, so throughput
+ * multiplied by {@value #TRANSACTIONS} is the number of scanned transactions per core.</p>
+ * <p>Usage: {@code mvn test-compile} and run {@code ScanBenchmark} with the test classpath.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+
+    private static final int TRANSACTIONS = 1_000_000;
+
+    private static final int ACCOUNTS = 1000;
+
+    // percentage of transactions within scanned time period
+    @Param({"1", "50"})
+    private int selectivity;
+
+    private TransactionStorage transactionStorage;
+
+    private TransactionQuery timeQuery;
+
+    private TransactionQuery accountQuery;
+
+    private QueryPlan scanPlan;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ScanBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(UUID.randomUUID());
+        }
+
+        transactionStorage = new TransactionStorage();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            transactionStorage.addTransaction(new TransferTransaction(ids.get(random.nextInt(ACCOUNTS)),
+                    ids.get(random.nextInt(ACCOUNTS)), BigDecimal.ONE, random.nextInt(100)));
+        }
+
+        timeQuery = new TransactionQuery(null, null, 0L, (long) selectivity - 1);
+        accountQuery = new TransactionQuery(ids.get(0), null, 0L, (long) selectivity - 1);
+        // timestamps are shuffled, so both queries are planned as full scans
+        scanPlan = transactionStorage.plan(timeQuery);
+    }
+
+    @Benchmark
+    public int columnarTimeRange() {
+        return transactionStorage.getTransactions(timeQuery, scanPlan).size();
+    }
+
+    @Benchmark
+    public int columnarTimeRangeAndTransmitter() {
+        return transactionStorage.getTransactions(accountQuery, scanPlan).size();
+    }
+
+    @Benchmark
+    public int rowwiseTimeRange() {
+        return scanRowwise(timeQuery).size();
+    }
+
+    @Benchmark
+    public int rowwiseTimeRangeAndTransmitter() {
+        return scanRowwise(accountQuery).size();
+    }
+
+    private List<TransferTransaction> scanRowwise(TransactionQuery query) {
+        TransactionLog log = transactionStorage.getTransactionLog();
+        List<TransferTransaction> result = new ArrayList<>();
+        for (int i = 0; i < log.size(); i++) {
+            TransferTransaction transaction = log.get(i);
+            if (query.matches(transaction)) {
+                result.add(transaction);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.khasanov.rest.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.provider.JsonMapperResolver;
+import ru.khasanov.rest.provider.Uuids;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>JMH benchmark of request parsing and response writing.</p>
+ * <p>Compares reflective mapper configured as the default one ({@code reflective*}) with mapper provided by
+ * {@link JsonMapperResolver} ({@code tuned*}), and {@link UUID#fromString(String)} with {@link Uuids#parse}.</p>
+ * <p>Usage: {@code mvn test-compile} and run {@code SerializationBenchmark} with the test classpath.</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final int TRANSACTIONS = 100;
+
+    private static final TypeReference<List<UserAccount>> ACCOUNTS_TYPE = new TypeReference<List<UserAccount>>() {
+    };
+
+    private ObjectMapper reflectiveMapper;
+
+    private ObjectMapper tunedMapper;
+
+    private List<TransferTransaction> transactions;
+
+    private byte[] accountsJson;
+
+    private String uuid;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        reflectiveMapper = new ObjectMapper();
+        reflectiveMapper.setAnnotationIntrospector(AnnotationIntrospector.pair(
+                new JacksonAnnotationIntrospector(), new JaxbAnnotationIntrospector(reflectiveMapper.getTypeFactory())));
+
+        tunedMapper = JsonMapperResolver.createMapper();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        transactions = new ArrayList<>();
+        List<UserAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextLong(1_000_000), 2);
+            transactions.add(new TransferTransaction(
+                    UUID.randomUUID(), UUID.randomUUID(), amount, System.currentTimeMillis()));
+            accounts.add(new UserAccount(UUID.randomUUID(), amount));
+        }
+
+        accountsJson = reflectiveMapper.writeValueAsBytes(accounts);
+        uuid = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public byte[] reflectiveWriteTransactions() throws Exception {
+        return reflectiveMapper.writeValueAsBytes(transactions);
+    }
+
+    @Benchmark
+    public byte[] tunedWriteTransactions() throws Exception {
+        return tunedMapper.writeValueAsBytes(transactions);
+    }
+
+    @Benchmark
+    public List<UserAccount> reflectiveReadAccounts() throws Exception {
+        return reflectiveMapper.readValue(accountsJson, ACCOUNTS_TYPE);
+    }
+
+    @Benchmark
+    public List<UserAccount> tunedReadAccounts() throws Exception {
+        return tunedMapper.readValue(accountsJson, ACCOUNTS_TYPE);
+    }
+
+    @Benchmark
+    public UUID jdkParseUuid() {
+        return UUID.fromString(uuid);
+    }
+
+    @Benchmark
+    public UUID tunedParseUuid() {
+        return Uuids.parse(uuid);
+    }
+}
@@ -0,0 +1,148 @@
+package ru.khasanov.rest.benchmark;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import ru.khasanov.rest.Main;
+import ru.khasanov.rest.config.ServiceConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Load benchmark of transport settings.</p>
+ * <p>Runs the service with every combination of I/O strategy and worker pool size and reports
+ * throughput and 99th percentile latency of a mix of account reads and transfers.</p>
+ * <p>Usage: {@code TransportBenchmark [seconds per run] [client threads]}</p>
+ *
+ * @author Aleksandr Khasanov
+ */
+public class TransportBenchmark {
+
+    private static final List<String> IO_STRATEGIES = Arrays.asList("worker-thread", "same-thread", "leader-follower");
+
+    private static final List<Integer> WORKER_POOL_SIZES = Arrays.asList(4, 16, 64);
+
+    private static final int ACCOUNTS = 100;
+
+    private static final int READS_PER_TRANSFER = 4;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        System.out.println(String.format("%-16s %8s %12s %10s", "io strategy", "workers", "requests/s", "p99 ms"));
+
+        for (String ioStrategy : IO_STRATEGIES) {
+            for (int workers : WORKER_POOL_SIZES) {
+                Properties properties = new Properties();
+                properties.setProperty(ServiceConfiguration.TRANSPORT_IO_STRATEGY, ioStrategy);
+                properties.setProperty(ServiceConfiguration.TRANSPORT_WORKER_CORE_POOL_SIZE, String.valueOf(workers));
+                properties.setProperty(ServiceConfiguration.TRANSPORT_WORKER_MAX_POOL_SIZE, String.valueOf(workers));
+
+                ServiceConfiguration configuration = new ServiceConfiguration(properties);
+                Main.initApplicationService(configuration);
+                HttpServer server = Main.startServer(configuration);
+
+                try {
+                    Result result = run(Main.getBaseUri(configuration), seconds, clients);
+                    System.out.println(String.format("%-16s %8d %12.0f %10.2f",
+                            ioStrategy, workers, result.throughput, result.p99Millis));
+                } finally {
+                    server.shutdownNow();
+                }
+            }
+        }
+
+        // manager executors are not daemon threads
+        System.exit(0);
+    }
+
+    private static Result run(URI baseUri, int seconds, int clients) throws Exception {
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String id = UUID.randomUUID().toString();
+            request("POST", baseUri + "accounts?id=" + id + "&balance=1000000");
+            accounts.add(id);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(executorService.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                while (System.nanoTime() < deadline) {
+                    String from = accounts.get(random.nextInt(ACCOUNTS));
+                    String to = accounts.get(random.nextInt(ACCOUNTS));
+
+                    long start = System.nanoTime();
+                    if (count % (READS_PER_TRANSFER + 1) == 0) {
+                        request("POST", baseUri + "transactions/transfer?from=" + from + "&to=" + to + "&amount=1");
+                    } else {
+                        request("GET", baseUri + "accounts/" + from);
+                    }
+
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        long[] all = new long[0];
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        executorService.shutdown();
+
+        Arrays.sort(all);
+        Result result = new Result();
+        result.throughput = (double) all.length / seconds;
+        result.p99Millis = all.length == 0 ? 0 : all[(int) (all.length * 0.99)] / 1e6;
+        return result;
+    }
+
+    private static void request(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+
+        int status = connection.getResponseCode();
+        try (InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (inputStream != null) {
+                byte[] buffer = new byte[4096];
+                while (inputStream.read(buffer) >= 0) {
+                    // drain response so that connection is reused
+                }
+            }
+        }
+    }
+
+    private static class Result {
+
+        private double throughput;
+
+        private double p99Millis;
+    }
+}
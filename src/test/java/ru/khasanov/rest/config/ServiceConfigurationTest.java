@@ -0,0 +1,51 @@
+package ru.khasanov.rest.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link ServiceConfiguration} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class ServiceConfigurationTest {
+
+    @Test
+    public void testConfiguredValues() {
+        Properties properties = new Properties();
+        properties.setProperty(ServiceConfiguration.SERVER_PORT, "9090");
+        properties.setProperty(ServiceConfiguration.COMPRESSION_ENCODINGS, "deflate, gzip");
+
+        ServiceConfiguration configuration = new ServiceConfiguration(properties);
+
+        assertEquals(9090, configuration.getInt(ServiceConfiguration.SERVER_PORT, 8080));
+        assertEquals(Arrays.asList("deflate", "gzip"),
+                configuration.getList(ServiceConfiguration.COMPRESSION_ENCODINGS, Collections.emptyList()));
+    }
+
+    @Test
+    public void testDefaultValues() {
+        Properties properties = new Properties();
+        properties.setProperty(ServiceConfiguration.TRANSACTIONS_TIMEOUT, "not a number");
+
+        ServiceConfiguration configuration = new ServiceConfiguration(properties);
+
+        assertEquals(1000, configuration.getInt(ServiceConfiguration.TRANSACTIONS_TIMEOUT, 1000));
+        assertEquals("localhost", configuration.getString(ServiceConfiguration.SERVER_HOST, "localhost"));
+    }
+
+    @Test
+    public void testSystemPropertiesOverride() {
+        System.setProperty(ServiceConfiguration.FEED_BUFFER_SIZE, "16");
+        try {
+            assertEquals(16, ServiceConfiguration.load().getInt(ServiceConfiguration.FEED_BUFFER_SIZE, 1024));
+        } finally {
+            System.clearProperty(ServiceConfiguration.FEED_BUFFER_SIZE);
+        }
+    }
+}
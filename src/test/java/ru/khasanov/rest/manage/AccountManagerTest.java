@@ -7,6 +7,7 @@ import ru.khasanov.rest.model.UserAccount;
 import ru.khasanov.rest.storage.AccountStorage;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -121,4 +122,63 @@ public class AccountManagerTest {
         assertFalse(accountManager.deleteAccount(UUID.randomUUID()));
         assertEquals(1, accountManager.getAllAccounts().size());
     }
+
+    @Test
+    public void testCreateAccounts() throws InterruptedException, ExecutionException, TimeoutException {
+
+        assumeThat(accountManager.getAllAccounts().size(), Is.is(0));
+
+        UserAccount account1 = new UserAccount(UUID.randomUUID(), BigDecimal.TEN);
+        UserAccount account2 = new UserAccount(UUID.randomUUID(), BigDecimal.ONE);
+        accountManager.createNewAccounts(Arrays.asList(account1, account2));
+
+        assertEquals(2, accountManager.getAllAccounts().size());
+        assertEquals(BigDecimal.TEN, accountManager.getAccount(account1.getUserId()).getBalance());
+        assertEquals(BigDecimal.ONE, accountManager.getAccount(account2.getUserId()).getBalance());
+    }
+
+    @Test
+    public void testGetAccounts() throws InterruptedException, ExecutionException, TimeoutException {
+
+        assumeThat(accountManager.getAllAccounts().size(), Is.is(0));
+
+        UserAccount account1 = accountManager.createNewAccount(UUID.randomUUID(), BigDecimal.TEN);
+        UserAccount account2 = accountManager.createNewAccount(UUID.randomUUID(), BigDecimal.ONE);
+        accountManager.createNewAccount(UUID.randomUUID(), BigDecimal.ZERO);
+
+        List<UserAccount> accounts = accountManager.getAccounts(
+                Arrays.asList(account2.getUserId(), UUID.randomUUID(), account1.getUserId()));
+
+        assertEquals(Arrays.asList(account2, account1), accounts);
+    }
+
+    @Test
+    public void testTopAccounts() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        UUID id3 = UUID.randomUUID();
+
+        accountManager.createNewAccounts(Arrays.asList(
+                new UserAccount(id1, BigDecimal.valueOf(10)),
+                new UserAccount(id2, BigDecimal.valueOf(20)),
+                new UserAccount(id3, BigDecimal.valueOf(30))));
+
+        accountManager.getAccount(id1).acquire(BigDecimal.valueOf(25));
+        accountManager.getAccount(id3).withdraw(BigDecimal.valueOf(15));
+
+        List<UserAccount> top = accountManager.getTopAccounts(2);
+        assertEquals(2, top.size());
+        assertEquals(id1, top.get(0).getUserId());
+        assertEquals(BigDecimal.valueOf(35), top.get(0).getBalance());
+        assertEquals(id2, top.get(1).getUserId());
+
+        accountManager.deleteAccount(id1);
+        accountManager.createNewAccount(id2, BigDecimal.ONE);
+
+        top = accountManager.getTopAccounts(10);
+        assertEquals(2, top.size());
+        assertEquals(id3, top.get(0).getUserId());
+        assertEquals(id2, top.get(1).getUserId());
+        assertEquals(BigDecimal.ONE, top.get(1).getBalance());
+    }
 }
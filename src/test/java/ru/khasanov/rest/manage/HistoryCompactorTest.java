@@ -0,0 +1,193 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.storage.AccountStorage;
+import ru.khasanov.rest.storage.TransactionQuery;
+import ru.khasanov.rest.storage.TransactionStorage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link HistoryCompactor} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class HistoryCompactorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private TransactionStorage transactionStorage;
+    private AccountStorage accountStorage;
+    private HistoryCompactor historyCompactor;
+
+    @Before
+    public void setUp() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        transactionStorage = new TransactionStorage();
+        accountStorage = new AccountStorage();
+        historyCompactor = new HistoryCompactor(transactionStorage, accountStorage, executorService);
+        historyCompactor.setRetention(0);
+    }
+
+    @Test
+    public void testCompactDeletedAccounts() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID first = createAccount();
+        UUID second = createAccount();
+        UUID live = createAccount();
+
+        int between = transactionStorage.addTransaction(new TransferTransaction(first, second, BigDecimal.ONE, 1));
+        int withLive = transactionStorage.addTransaction(new TransferTransaction(first, live, BigDecimal.ONE, 2));
+
+        AtomicInteger notifications = new AtomicInteger();
+        historyCompactor.setCompactionListener(notifications::incrementAndGet);
+
+        accountStorage.deleteAccount(first);
+        accountStorage.deleteAccount(second);
+        assertEquals(2, accountStorage.getTombstones().size());
+
+        long version = transactionStorage.getVersion();
+        assertEquals(2, historyCompactor.compact());
+
+        assertTrue(accountStorage.getTombstones().isEmpty());
+        assertTrue(transactionStorage.getVersion() > version);
+        assertEquals(1, notifications.get());
+
+        assertTrue(transactionStorage.getTransactions(new TransactionQuery(first, null, null, null)).isEmpty());
+        assertTrue(transactionStorage.getTransactions(new TransactionQuery(null, second, null, null)).isEmpty());
+
+        // transaction of two deleted accounts is released, and transaction with live account is kept
+        assertNull(transactionStorage.getTransactionLog().get(between));
+        assertNotNull(transactionStorage.getTransactionLog().get(withLive));
+        assertEquals(Collections.singletonList(transactionStorage.getTransactionLog().get(withLive)),
+                transactionStorage.getTransactions(new TransactionQuery(null, live, null, null)));
+        assertEquals(1, transactionStorage.getTransactions(new TransactionQuery(null, null, 0L, null)).size());
+
+        assertEquals(0, historyCompactor.compact());
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    public void testRetentionAndRecreatedAccounts() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID recreated = createAccount();
+        UUID other = createAccount();
+        transactionStorage.addTransaction(new TransferTransaction(recreated, other, BigDecimal.ONE, 1));
+
+        accountStorage.deleteAccount(recreated);
+
+        historyCompactor.setRetention(60_000);
+        assertEquals(0, historyCompactor.compact());
+        assertEquals(1, accountStorage.getTombstones().size());
+
+        // history of recreated account belongs to it
+        accountStorage.addAccount(new UserAccount(recreated, BigDecimal.TEN));
+        historyCompactor.setRetention(0);
+        assertEquals(0, historyCompactor.compact());
+        assertTrue(accountStorage.getTombstones().isEmpty());
+        assertEquals(1, transactionStorage.getTransactions(new TransactionQuery(recreated, null, null, null)).size());
+    }
+
+    @Test
+    public void testArchiveHistory() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+        UUID deleted = createAccount();
+        UUID other = createAccount();
+        transactionStorage.addTransaction(new TransferTransaction(deleted, other, BigDecimal.valueOf(3), 1));
+        transactionStorage.addTransaction(new TransferTransaction(other, deleted, BigDecimal.valueOf(2), 2));
+
+        Path directory = temporaryFolder.getRoot().toPath();
+        historyCompactor.setArchiveDirectory(directory);
+        accountStorage.deleteAccount(deleted);
+
+        assertEquals(1, historyCompactor.compact());
+
+        List<String> lines = Files.readAllLines(directory.resolve(deleted + ".csv"), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals(deleted + "," + other + ",3,1", lines.get(0));
+        assertEquals(other + "," + deleted + ",2,2", lines.get(1));
+    }
+
+    @Test
+    public void testFailedArchiveKeepsHistory() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+        UUID deleted = createAccount();
+        transactionStorage.addTransaction(new TransferTransaction(deleted, createAccount(), BigDecimal.ONE, 1));
+
+        historyCompactor.setArchiveDirectory(temporaryFolder.newFile("archive").toPath());
+        accountStorage.deleteAccount(deleted);
+
+        assertEquals(0, historyCompactor.compact());
+        assertFalse(accountStorage.getTombstones().isEmpty());
+        assertEquals(1, transactionStorage.getTransactions(new TransactionQuery(deleted, null, null, null)).size());
+    }
+
+    @Test
+    public void testDeletedAgainBeforePurge() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID deleted = createAccount();
+        UUID other = createAccount();
+        transactionStorage.addTransaction(new TransferTransaction(deleted, other, BigDecimal.ONE, 1));
+        accountStorage.deleteAccount(deleted);
+
+        AtomicInteger tasks = new AtomicInteger();
+        ExecutorService executorService = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                if (tasks.incrementAndGet() == 2) {
+                    // account is created, takes part in transaction and is deleted again after positions are read
+                    accountStorage.addAccount(new UserAccount(deleted, BigDecimal.TEN));
+                    transactionStorage.addTransaction(new TransferTransaction(deleted, other, BigDecimal.ONE, 2));
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    accountStorage.deleteAccount(deleted);
+                }
+            }
+        };
+        HistoryCompactor compactor = new HistoryCompactor(transactionStorage, accountStorage, executorService);
+        compactor.setRetention(0);
+
+        assertEquals(0, compactor.compact());
+        assertEquals(1, accountStorage.getTombstones().size());
+        assertEquals(2, transactionStorage.getTransactions(new TransactionQuery(deleted, null, null, null)).size());
+
+        // new tombstone is compacted together with the whole history
+        assertEquals(1, compactor.compact());
+        assertTrue(accountStorage.getTombstones().isEmpty());
+        assertTrue(transactionStorage.getTransactions(new TransactionQuery(deleted, null, null, null)).isEmpty());
+        assertEquals(2, transactionStorage.getTransactions(new TransactionQuery(null, other, null, null)).size());
+        executorService.shutdown();
+    }
+
+    private UUID createAccount() {
+        UUID userId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(userId, BigDecimal.TEN));
+        return userId;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link IdempotencyCache} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class IdempotencyCacheTest {
+
+    private IdempotencyCache idempotencyCache;
+
+    @Before
+    public void setUp() {
+        idempotencyCache = new IdempotencyCache();
+        idempotencyCache.setMaxSize(1);
+    }
+
+    @Test
+    public void testOperationInProgressIsNotEvicted() throws InterruptedException, ExecutionException {
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<Object> operation = new CompletableFuture<>();
+
+        Future<?> outcome = idempotencyCache.getOrStart("a", 1, () -> {
+            started.incrementAndGet();
+            return operation;
+        });
+        idempotencyCache.getOrStart("b", 1, () -> CompletableFuture.completedFuture(null));
+
+        // the bound is exceeded while the first operation is in progress
+        assertEquals(2, idempotencyCache.size());
+        assertSame(outcome, idempotencyCache.getOrStart("a", 1, () -> {
+            started.incrementAndGet();
+            return operation;
+        }));
+        assertEquals(1, started.get());
+        assertFalse(outcome.isDone());
+
+        operation.complete("done");
+        assertEquals("done", outcome.get());
+
+        idempotencyCache.getOrStart("c", 1, () -> CompletableFuture.completedFuture(null));
+        assertEquals(1, idempotencyCache.size());
+    }
+
+    @Test
+    public void testFailedOperationIsReported() throws InterruptedException {
+        CompletableFuture<Object> operation = new CompletableFuture<>();
+        Future<?> outcome = idempotencyCache.getOrStart("a", 1, () -> operation);
+        operation.completeExceptionally(new IllegalArgumentException("invalid"));
+
+        try {
+            outcome.get();
+            fail("Failure of operation must be reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testKeyOfRejectedOperationIsReleased() throws InterruptedException, ExecutionException {
+        try {
+            idempotencyCache.getOrStart("a", 1, () -> {
+                throw new RejectedExecutionException();
+            });
+            fail("Rejection of operation must be reported");
+        } catch (RejectedExecutionException e) {
+            assertEquals(0, idempotencyCache.size());
+        }
+
+        assertEquals("done", idempotencyCache.getOrStart("a", 1, () -> CompletableFuture.completedFuture("done")).get());
+    }
+}
@@ -0,0 +1,146 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.khasanov.rest.model.ReconciliationReport;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.storage.AccountStorage;
+import ru.khasanov.rest.storage.TransactionStorage;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link LedgerReconciler} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class LedgerReconcilerTest {
+
+    private TransactionManager transactionManager;
+    private TransactionStorage transactionStorage;
+    private AccountStorage accountStorage;
+    private LedgerReconciler ledgerReconciler;
+
+    @Before
+    public void setUp() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        transactionStorage = new TransactionStorage();
+        accountStorage = new AccountStorage();
+        accountStorage.setTransactionLog(transactionStorage.getTransactionLog());
+        transactionManager = new TransactionManager(transactionStorage, accountStorage, executorService);
+        ledgerReconciler = new LedgerReconciler(transactionStorage, accountStorage, executorService, new ForkJoinPool(4));
+    }
+
+    @Test
+    public void testReconcileConsistentLedger() throws InterruptedException, ExecutionException, TimeoutException {
+        List<UserAccount> accounts = createAccounts(10, 100);
+
+        for (int i = 0; i < 500; i++) {
+            UserAccount from = accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+            UserAccount to = accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+            if (from != to) {
+                transactionManager.transfer(from.getUserId(), to.getUserId(), BigDecimal.ONE);
+            }
+        }
+
+        assertNull(ledgerReconciler.getLastReport());
+
+        ReconciliationReport report = ledgerReconciler.reconcile();
+
+        assertEquals(transactionStorage.size(), report.getTransactions());
+        assertEquals(10, report.getAccounts());
+        assertTrue(report.getDiscrepancies().isEmpty());
+        assertSame(report, ledgerReconciler.getLastReport());
+    }
+
+    @Test
+    public void testReconcileTamperedBalance() throws InterruptedException, ExecutionException, TimeoutException {
+        List<UserAccount> accounts = createAccounts(3, 100);
+        UserAccount from = accounts.get(0);
+        UserAccount to = accounts.get(1);
+
+        transactionManager.transfer(from.getUserId(), to.getUserId(), BigDecimal.valueOf(30));
+        // balance changed without a transaction
+        to.acquire(BigDecimal.valueOf(5));
+
+        ReconciliationReport report = ledgerReconciler.reconcile();
+
+        assertEquals(1, report.getDiscrepancies().size());
+        ReconciliationReport.Discrepancy discrepancy = report.getDiscrepancies().get(0);
+        assertEquals(to.getUserId(), discrepancy.getUserId());
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(discrepancy.getOpeningBalance()));
+        assertEquals(0, BigDecimal.valueOf(30).compareTo(discrepancy.getNetFlow()));
+        assertEquals(0, BigDecimal.valueOf(135).compareTo(discrepancy.getBalance()));
+    }
+
+    @Test
+    public void testReconcileLedgerOfManySegments() throws InterruptedException, ExecutionException, TimeoutException {
+        List<UserAccount> accounts = createAccounts(100, 1_000_000);
+
+        // ledger long enough to be replayed by several segments
+        for (int i = 0; i < 200_000; i++) {
+            UserAccount from = accounts.get(i % accounts.size());
+            UserAccount to = accounts.get((i * 7 + 1) % accounts.size());
+            BigDecimal amount = BigDecimal.valueOf(i % 5);
+            from.withdraw(amount);
+            to.acquire(amount);
+            transactionStorage.addTransaction(new TransferTransaction(from.getUserId(), to.getUserId(), amount, i));
+        }
+        accounts.get(42).withdraw(BigDecimal.ONE);
+
+        ReconciliationReport report = ledgerReconciler.reconcile();
+
+        assertEquals(200_000, report.getTransactions());
+        assertEquals(1, report.getDiscrepancies().size());
+        assertEquals(accounts.get(42).getUserId(), report.getDiscrepancies().get(0).getUserId());
+    }
+
+    @Test
+    public void testReconcileAccountCreatedAgain() throws InterruptedException, ExecutionException, TimeoutException {
+        List<UserAccount> accounts = createAccounts(2, 100);
+        UUID userId = accounts.get(0).getUserId();
+        UUID otherId = accounts.get(1).getUserId();
+
+        transactionManager.transfer(userId, otherId, BigDecimal.valueOf(30));
+
+        // account replaced with the same id, then deleted and created again
+        UserAccount replaced = new UserAccount(userId, BigDecimal.valueOf(50));
+        accountStorage.addAccount(replaced);
+        transactionManager.transfer(otherId, userId, BigDecimal.valueOf(10));
+        accountStorage.deleteAccount(userId);
+        UserAccount created = new UserAccount(userId, BigDecimal.valueOf(70));
+        accountStorage.addAccount(created);
+        transactionManager.transfer(userId, otherId, BigDecimal.valueOf(5));
+
+        assertEquals(2, created.getOpeningPosition());
+
+        ReconciliationReport report = ledgerReconciler.reconcile();
+
+        assertTrue(report.getDiscrepancies().isEmpty());
+    }
+
+    private List<UserAccount> createAccounts(int count, long balance) {
+        List<UserAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserAccount account = new UserAccount(UUID.randomUUID(), BigDecimal.valueOf(balance));
+            accountStorage.addAccount(account);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+}
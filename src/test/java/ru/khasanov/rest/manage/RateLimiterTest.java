@@ -0,0 +1,63 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link RateLimiter} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void testBurstAndRefill() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(20, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("key"));
+        }
+        long wait = rateLimiter.tryAcquire("key");
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(50));
+
+        // other keys have their own buckets
+        assertEquals(0, rateLimiter.tryAcquire("other"));
+
+        TimeUnit.NANOSECONDS.sleep(wait);
+        assertEquals(0, rateLimiter.tryAcquire("key"));
+    }
+
+    @Test
+    public void testCheckAndReleaseKeepTokens() {
+        RateLimiter rateLimiter = new RateLimiter(0.1, 1);
+
+        assertEquals(0, rateLimiter.check("key"));
+        assertEquals(0, rateLimiter.check("key"));
+        assertEquals(0, rateLimiter.tryAcquire("key"));
+        assertTrue(rateLimiter.check("key") > 0);
+
+        rateLimiter.release("key");
+        assertEquals(0, rateLimiter.check("key"));
+        assertEquals(0, rateLimiter.tryAcquire("key"));
+        assertTrue(rateLimiter.tryAcquire("key") > 0);
+    }
+
+    @Test
+    public void testIdleBucketsAreEvicted() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(1000, 1);
+
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.tryAcquire(i);
+        }
+        assertEquals(100, rateLimiter.size());
+
+        Thread.sleep(10);
+        rateLimiter.tryAcquire("active");
+        rateLimiter.evictIdle();
+        assertEquals(1, rateLimiter.size());
+    }
+}
@@ -0,0 +1,113 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link SingleFlight} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class SingleFlightTest {
+
+    private ExecutorService executorService;
+    private SingleFlight<String, Integer> singleFlight;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newSingleThreadExecutor();
+        singleFlight = new SingleFlight<>();
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testPendingRequestsShareComputation() throws InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executorService.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        started.await();
+
+        AtomicInteger computations = new AtomicInteger();
+        CompletableFuture<Integer> first = singleFlight.execute("a", executorService, computations::incrementAndGet);
+        CompletableFuture<Integer> second = singleFlight.execute("a", executorService, computations::incrementAndGet);
+        CompletableFuture<Integer> other = singleFlight.execute("b", executorService, () -> 42);
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, singleFlight.size());
+
+        release.countDown();
+        assertEquals(1, (int) first.get(1, TimeUnit.SECONDS));
+        assertEquals(1, (int) second.get(1, TimeUnit.SECONDS));
+        assertEquals(42, (int) other.get(1, TimeUnit.SECONDS));
+        assertEquals(1, computations.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void testStartedComputationIsNotJoined() throws InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+
+        CompletableFuture<Integer> first = singleFlight.execute("a", executorService, () -> {
+            started.countDown();
+            release.await();
+            return computations.incrementAndGet();
+        });
+        started.await();
+
+        CompletableFuture<Integer> second = singleFlight.execute("a", executorService, computations::incrementAndGet);
+        assertNotSame(first, second);
+
+        release.countDown();
+        assertEquals(1, (int) first.get(1, TimeUnit.SECONDS));
+        assertEquals(2, (int) second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailureIsShared() throws InterruptedException, TimeoutException {
+        CompletableFuture<Integer> flight = singleFlight.execute("a", executorService, () -> {
+            throw new IllegalStateException("failed");
+        });
+
+        try {
+            flight.get(1, TimeUnit.SECONDS);
+            fail("Failure of computation must be reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, singleFlight.size());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
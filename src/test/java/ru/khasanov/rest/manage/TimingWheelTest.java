@@ -0,0 +1,85 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link TimingWheel} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    @Test
+    public void testItemsExpireAtDeadlines() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, 3, 0);
+
+        // deadlines on every level, including ones moved down several times
+        List<Long> deadlines = Arrays.asList(5L, 10L, 640L, 650L, 1000L, 40960L, 41000L, 100000L, 2621440L, 5000000L);
+        List<Long> shuffled = new ArrayList<>(deadlines);
+        Collections.shuffle(shuffled);
+        for (long deadline : shuffled) {
+            wheel.schedule(deadline, deadline);
+        }
+        assertEquals(deadlines.size(), wheel.size());
+
+        List<Long> expired = new ArrayList<>();
+        for (long now = 0; now <= 5000000L; now += TICK) {
+            long currentTime = now;
+            wheel.advance(now, deadline -> {
+                assertTrue(deadline <= currentTime && deadline > currentTime - TICK);
+                expired.add(deadline);
+            });
+        }
+
+        // items expiring on the same tick come in no particular order
+        Collections.sort(expired);
+        assertEquals(deadlines, expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 0);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 1000);
+        wheel.schedule("expired", 1000);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1000, expired::add);
+        assertEquals(Collections.singletonList("expired"), expired);
+    }
+
+    @Test
+    public void testPastDeadlineAndJumps() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 1000);
+        wheel.schedule("past", 500);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1000, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(1010, expired::add);
+        assertEquals(Collections.singletonList("past"), expired);
+
+        // idle wheel jumps forward and keeps working
+        wheel.advance(10_000_000, expired::add);
+        wheel.schedule("next", 10_000_050);
+        wheel.advance(10_000_040, expired::add);
+        assertEquals(1, expired.size());
+        wheel.advance(10_000_050, expired::add);
+        assertEquals(Arrays.asList("past", "next"), expired);
+    }
+}
@@ -0,0 +1,133 @@
+package ru.khasanov.rest.manage;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.storage.TransactionLog;
+import ru.khasanov.rest.storage.TransactionStorage;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link TransactionFeed} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class TransactionFeedTest {
+
+    private TransactionFeed transactionFeed;
+
+    @Before
+    public void setUp() {
+        transactionFeed = new TransactionFeed();
+        transactionFeed.setBufferSize(2);
+    }
+
+    @Test
+    public void testSlowSubscriberIsDropped() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+
+        TransactionFeed.Subscription subscription = transactionFeed.subscribe(
+                p -> true, new TransactionLog(), 0, new TransactionFeed.TransactionListener() {
+                    @Override
+                    public void onTransaction(long position, TransferTransaction transaction) {
+                        delivered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public void onClose() {
+                        closed.countDown();
+                    }
+                });
+
+        transactionFeed.publish(0, createTransaction());
+        assertTrue(delivered.await(1, TimeUnit.SECONDS));
+        assertFalse(subscription.isClosed());
+
+        transactionFeed.publish(1, createTransaction());
+        transactionFeed.publish(2, createTransaction());
+        transactionFeed.publish(3, createTransaction());
+        release.countDown();
+
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertTrue(subscription.isClosed());
+        assertEquals(0, transactionFeed.getSubscriptionCount());
+    }
+
+    @Test
+    public void testPublishedDuringBacklogReplay() throws InterruptedException {
+        TransactionStorage transactionStorage = new TransactionStorage();
+        for (int i = 0; i < 100; i++) {
+            transactionStorage.addTransaction(createTransaction());
+        }
+
+        List<Long> positions = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch replayed = new CountDownLatch(110);
+        CountDownLatch completed = new CountDownLatch(111);
+
+        TransactionFeed.Subscription subscription = transactionFeed.subscribe(
+                p -> true, transactionStorage.getTransactionLog(), 0, new TransactionFeed.TransactionListener() {
+                    @Override
+                    public void onTransaction(long position, TransferTransaction transaction) {
+                        delivered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        positions.add(position);
+                        replayed.countDown();
+                        completed.countDown();
+                    }
+
+                    @Override
+                    public void onClose() {
+                    }
+                });
+
+        assertTrue(delivered.await(1, TimeUnit.SECONDS));
+
+        // more transactions than buffer holds are published while backlog is replayed
+        for (int i = 0; i < 10; i++) {
+            TransferTransaction transaction = createTransaction();
+            transactionFeed.publish(transactionStorage.addTransaction(transaction), transaction);
+        }
+        release.countDown();
+
+        assertTrue(replayed.await(1, TimeUnit.SECONDS));
+        assertFalse(subscription.isClosed());
+        assertEquals(110, positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(i, positions.get(i).intValue());
+        }
+
+        // transactions published after catching up are delivered from buffer
+        TransferTransaction transaction = createTransaction();
+        transactionFeed.publish(transactionStorage.addTransaction(transaction), transaction);
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+        assertEquals(111, positions.size());
+        assertEquals(110, positions.get(110).intValue());
+    }
+
+    private TransferTransaction createTransaction() {
+        return new TransferTransaction(UUID.randomUUID(), UUID.randomUUID(), BigDecimal.TEN, System.currentTimeMillis());
+    }
+}
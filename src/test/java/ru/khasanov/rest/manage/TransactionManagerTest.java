@@ -2,10 +2,13 @@ package ru.khasanov.rest.manage;
 
 import org.junit.Before;
 import org.junit.Test;
+import ru.khasanov.rest.model.Hold;
+import ru.khasanov.rest.model.ScheduledTransfer;
 import ru.khasanov.rest.model.TransferTransaction;
 import ru.khasanov.rest.model.UserAccount;
 import ru.khasanov.rest.resource.TransactionsRequestParameters;
 import ru.khasanov.rest.storage.AccountStorage;
+import ru.khasanov.rest.storage.TransactionQuery;
 import ru.khasanov.rest.storage.TransactionStorage;
 
 import javax.ws.rs.core.MultivaluedHashMap;
@@ -13,12 +16,20 @@ import javax.ws.rs.core.MultivaluedMap;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -30,12 +41,14 @@ public class TransactionManagerTest {
 
     private TransactionManager transactionManager;
     private AccountStorage accountStorage;
+    private ExecutorService executorService;
 
     @Before
     public void setUp() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService = Executors.newSingleThreadExecutor();
         TransactionStorage transactionStorage = new TransactionStorage();
         accountStorage = new AccountStorage();
+        accountStorage.setTransactionLog(transactionStorage.getTransactionLog());
         transactionManager = new TransactionManager(transactionStorage, accountStorage, executorService);
     }
 
@@ -58,6 +71,111 @@ public class TransactionManagerTest {
         assertEquals(BigDecimal.valueOf(150), toAccount.getBalance());
     }
 
+    @Test
+    public void testGetAccountAsOf() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(fromId, BigDecimal.valueOf(100)));
+        UUID toId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(toId, BigDecimal.valueOf(100)));
+
+        long before = System.currentTimeMillis() - 1;
+        transactionManager.transfer(fromId, toId, BigDecimal.valueOf(30));
+        long after = System.currentTimeMillis();
+
+        assertEquals(BigDecimal.valueOf(100), transactionManager.getAccountAsOf(fromId, before).getBalance());
+        assertEquals(BigDecimal.valueOf(70), transactionManager.getAccountAsOf(fromId, after).getBalance());
+        assertEquals(BigDecimal.valueOf(130), transactionManager.getAccountAsOf(toId, after).getBalance());
+        assertNull(transactionManager.getAccountAsOf(UUID.randomUUID(), after));
+    }
+
+    @Test
+    public void testGetAccountAsOfCreatedAgain() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID userId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(userId, BigDecimal.valueOf(1000)));
+        UUID otherId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(otherId, BigDecimal.valueOf(1000)));
+
+        // enough transfers for balance checkpoints in both incarnations
+        for (int i = 0; i < 100; i++) {
+            transactionManager.transfer(userId, otherId, BigDecimal.ONE);
+        }
+        accountStorage.deleteAccount(userId);
+        UserAccount created = new UserAccount(userId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(created);
+        for (int i = 0; i < 70; i++) {
+            transactionManager.transfer(otherId, userId, BigDecimal.ONE);
+        }
+
+        assertEquals(BigDecimal.valueOf(170), created.getBalance());
+        assertEquals(created.getBalance(),
+                transactionManager.getAccountAsOf(userId, System.currentTimeMillis()).getBalance());
+    }
+
+    @Test
+    public void testGetTransactionsScannedInParallel() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(fromId, BigDecimal.valueOf(100)));
+        UUID toId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(toId, BigDecimal.valueOf(100)));
+
+        for (int i = 0; i < 20; i++) {
+            transactionManager.transfer(fromId, toId, BigDecimal.ONE);
+        }
+
+        TransactionQuery query = new TransactionQuery(null, null, null, null);
+        List<TransferTransaction> expected = transactionManager.getTransactions(query);
+
+        transactionManager.setScanPool(new ForkJoinPool(2));
+        transactionManager.setParallelScanThreshold(1);
+
+        assertEquals(20, expected.size());
+        assertEquals(expected, transactionManager.getTransactions(query));
+    }
+
+    @Test
+    public void testPlanningAndScanShareTimeout() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(fromId, BigDecimal.valueOf(100)));
+        UUID toId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(toId, BigDecimal.valueOf(100)));
+
+        for (int i = 0; i < 20; i++) {
+            transactionManager.transfer(fromId, toId, BigDecimal.ONE);
+        }
+
+        ForkJoinPool scanPool = new ForkJoinPool(1);
+        CountDownLatch scanPoolBusy = new CountDownLatch(1);
+        scanPool.execute(() -> {
+            try {
+                scanPoolBusy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        transactionManager.setScanPool(scanPool);
+        transactionManager.setParallelScanThreshold(1);
+        transactionManager.setTimeout(200);
+
+        // planning waits for the storage thread most of the timeout, scan gets only the rest of it
+        executorService.submit(() -> {
+            Thread.sleep(150);
+            return null;
+        });
+
+        TransactionQuery query = new TransactionQuery(null, null, null, null);
+        long started = System.nanoTime();
+        try {
+            transactionManager.getTransactions(query);
+            fail("Scan was not expected to finish while scan pool is busy");
+        } catch (TimeoutException e) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 300);
+        } finally {
+            scanPoolBusy.countDown();
+        }
+
+        assertEquals(20, transactionManager.getTransactions(query).size());
+    }
+
     @Test(expected = ExecutionException.class)
     public void testTransferNegativeAmount() throws InterruptedException, ExecutionException, TimeoutException {
         UUID fromId = UUID.randomUUID();
@@ -268,4 +386,231 @@ public class TransactionManagerTest {
 
         assertEquals(2, transactions.size());
     }
+
+    @Test
+    public void testSubscribeToTransactions() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID id1 = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(id1, BigDecimal.valueOf(100)));
+
+        UUID id2 = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(id2, BigDecimal.valueOf(100)));
+
+        transactionManager.transfer(id1, id2, BigDecimal.valueOf(10));
+
+        BlockingQueue<Long> positions = new LinkedBlockingQueue<>();
+        transactionManager.subscribe(p -> id2.equals(p.getFrom()), null, new CollectingListener(positions));
+
+        transactionManager.transfer(id1, id2, BigDecimal.valueOf(10));
+        transactionManager.transfer(id2, id1, BigDecimal.valueOf(10));
+
+        assertEquals(Long.valueOf(2), positions.poll(1, TimeUnit.SECONDS));
+        assertEquals(0, positions.size());
+    }
+
+    @Test
+    public void testSubscribeFromPosition() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID id1 = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(id1, BigDecimal.valueOf(100)));
+
+        UUID id2 = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(id2, BigDecimal.valueOf(100)));
+
+        transactionManager.transfer(id1, id2, BigDecimal.valueOf(10));
+        transactionManager.transfer(id1, id2, BigDecimal.valueOf(10));
+
+        BlockingQueue<Long> positions = new LinkedBlockingQueue<>();
+        transactionManager.subscribe(p -> true, 1L, new CollectingListener(positions));
+
+        transactionManager.transfer(id1, id2, BigDecimal.valueOf(10));
+
+        assertEquals(Long.valueOf(1), positions.poll(1, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(2), positions.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSubscribeToBacklogLongerThanBuffer() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID id1 = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(id1, BigDecimal.valueOf(100)));
+
+        UUID id2 = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(id2, BigDecimal.valueOf(100)));
+
+        for (int i = 0; i < 10; i++) {
+            transactionManager.transfer(id1, id2, BigDecimal.ONE);
+        }
+
+        transactionManager.getTransactionFeed().setBufferSize(3);
+        BlockingQueue<Long> positions = new LinkedBlockingQueue<>();
+        transactionManager.subscribe(p -> true, 0L, new CollectingListener(positions));
+
+        for (long position = 0; position < 10; position++) {
+            assertEquals(Long.valueOf(position), positions.poll(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testIdempotentTransfer() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        UserAccount fromAccount = new UserAccount(fromId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(fromAccount);
+
+        UUID toId = UUID.randomUUID();
+        UserAccount toAccount = new UserAccount(toId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(toAccount);
+
+        String key = UUID.randomUUID().toString();
+        transactionManager.transfer(key, fromId, toId, BigDecimal.valueOf(50));
+        transactionManager.transfer(key, fromId, toId, new BigDecimal("50.00"));
+
+        assertEquals(BigDecimal.valueOf(50), fromAccount.getBalance());
+        assertEquals(BigDecimal.valueOf(150), toAccount.getBalance());
+        assertEquals(1, transactionManager.getTransactions(new MultivaluedHashMap<>()).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIdempotencyKeyReusedWithOtherAmount() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(fromId, BigDecimal.valueOf(100)));
+
+        UUID toId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(toId, BigDecimal.valueOf(100)));
+
+        String key = UUID.randomUUID().toString();
+        transactionManager.transfer(key, fromId, toId, BigDecimal.valueOf(50));
+        transactionManager.transfer(key, fromId, toId, BigDecimal.valueOf(40));
+    }
+
+    @Test
+    public void testIdempotencyKeysAreBounded() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(fromId, BigDecimal.valueOf(100)));
+
+        UUID toId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(toId, BigDecimal.valueOf(100)));
+
+        transactionManager.getIdempotencyCache().setMaxSize(2);
+        for (int i = 0; i < 5; i++) {
+            transactionManager.transfer(String.valueOf(i), fromId, toId, BigDecimal.ONE);
+        }
+
+        assertEquals(2, transactionManager.getIdempotencyCache().size());
+    }
+
+    @Test
+    public void testHoldCaptureAndRelease() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        UserAccount fromAccount = new UserAccount(fromId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(fromAccount);
+
+        UUID toId = UUID.randomUUID();
+        UserAccount toAccount = new UserAccount(toId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(toAccount);
+
+        Hold captured = transactionManager.hold(fromId, toId, BigDecimal.valueOf(60), null);
+        Hold released = transactionManager.hold(fromId, toId, BigDecimal.valueOf(30), null);
+        assertEquals(BigDecimal.valueOf(100), fromAccount.getBalance());
+        assertEquals(BigDecimal.valueOf(10), fromAccount.getAvailableBalance());
+
+        // held funds can not be transferred
+        try {
+            transactionManager.transfer(fromId, toId, BigDecimal.valueOf(11));
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+
+        transactionManager.capture(captured.getId(), BigDecimal.valueOf(50));
+        transactionManager.release(released.getId());
+        assertNull(transactionManager.getHold(captured.getId()));
+        assertNull(transactionManager.getHold(released.getId()));
+
+        assertEquals(BigDecimal.valueOf(50), fromAccount.getBalance());
+        assertEquals(BigDecimal.valueOf(50), fromAccount.getAvailableBalance());
+        assertEquals(BigDecimal.valueOf(150), toAccount.getBalance());
+
+        List<TransferTransaction> transactions = transactionManager.getTransactions(new MultivaluedHashMap<>());
+        assertEquals(1, transactions.size());
+        assertEquals(BigDecimal.valueOf(50), transactions.get(0).getAmount());
+
+        try {
+            transactionManager.capture(captured.getId(), null);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testHoldExpires() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        UserAccount fromAccount = new UserAccount(fromId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(fromAccount);
+
+        UUID toId = UUID.randomUUID();
+        accountStorage.addAccount(new UserAccount(toId, BigDecimal.valueOf(100)));
+
+        Hold hold = transactionManager.hold(fromId, toId, BigDecimal.valueOf(100), 200L);
+        assertEquals(BigDecimal.ZERO, fromAccount.getAvailableBalance());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transactionManager.getHold(hold.getId()) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertNull(transactionManager.getHold(hold.getId()));
+        assertEquals(BigDecimal.valueOf(100), fromAccount.getAvailableBalance());
+        assertEquals(BigDecimal.ZERO, fromAccount.getHeld());
+    }
+
+    @Test
+    public void testScheduledTransfersRunAsBatch() throws InterruptedException, ExecutionException, TimeoutException {
+        UUID fromId = UUID.randomUUID();
+        UserAccount fromAccount = new UserAccount(fromId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(fromAccount);
+
+        UUID toId = UUID.randomUUID();
+        UserAccount toAccount = new UserAccount(toId, BigDecimal.valueOf(100));
+        accountStorage.addAccount(toAccount);
+
+        long executeAt = System.currentTimeMillis() + 300;
+        for (int i = 0; i < 10; i++) {
+            transactionManager.scheduleTransfer(fromId, toId, BigDecimal.ONE, executeAt);
+        }
+        ScheduledTransfer cancelled = transactionManager.scheduleTransfer(fromId, toId, BigDecimal.TEN, executeAt);
+        ScheduledTransfer failing = transactionManager.scheduleTransfer(fromId, toId, BigDecimal.valueOf(1000), executeAt);
+
+        assertTrue(transactionManager.cancelScheduledTransfer(cancelled.getId()));
+        assertFalse(transactionManager.cancelScheduledTransfer(cancelled.getId()));
+        assertEquals(failing.getId(), transactionManager.getScheduledTransfer(failing.getId()).getId());
+        assertEquals(BigDecimal.valueOf(100), fromAccount.getBalance());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transactionManager.getScheduledTransfer(failing.getId()) != null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertTrue(System.currentTimeMillis() >= executeAt);
+        assertEquals(BigDecimal.valueOf(90), fromAccount.getBalance());
+        assertEquals(BigDecimal.valueOf(110), toAccount.getBalance());
+        assertEquals(10, transactionManager.getTransactions(new MultivaluedHashMap<>()).size());
+    }
+
+    private static class CollectingListener implements TransactionFeed.TransactionListener {
+
+        private final BlockingQueue<Long> positions;
+
+        CollectingListener(BlockingQueue<Long> positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public void onTransaction(long position, TransferTransaction transaction) {
+            positions.add(position);
+        }
+
+        @Override
+        public void onClose() {
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package ru.khasanov.rest.provider;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+import org.junit.Test;
+import ru.khasanov.rest.model.TransferTransaction;
+import ru.khasanov.rest.model.UserAccount;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link ModelJsonModule} and {@link Uuids} classes
+ *
+ * @author Aleksandr Khasanov
+ */
+public class ModelJsonModuleTest {
+
+    private final ObjectMapper mapper = JsonMapperResolver.createMapper();
+
+    @Test
+    public void testSameJsonAsReflectiveMapper() throws Exception {
+        ObjectMapper reflectiveMapper = new ObjectMapper();
+        reflectiveMapper.setAnnotationIntrospector(AnnotationIntrospector.pair(
+                new JacksonAnnotationIntrospector(), new JaxbAnnotationIntrospector(reflectiveMapper.getTypeFactory())));
+
+        List<UserAccount> accounts = Arrays.asList(
+                new UserAccount(UUID.randomUUID(), new BigDecimal("100.50")),
+                new UserAccount(UUID.randomUUID(), BigDecimal.ZERO));
+        List<TransferTransaction> transactions = Arrays.asList(
+                new TransferTransaction(UUID.randomUUID(), UUID.randomUUID(), new BigDecimal("1E+3"), 42));
+
+        assertEquals(reflectiveMapper.writeValueAsString(accounts), mapper.writeValueAsString(accounts));
+        assertEquals(reflectiveMapper.writeValueAsString(transactions), mapper.writeValueAsString(transactions));
+    }
+
+    @Test
+    public void testReadModel() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        List<UserAccount> accounts = mapper.readValue(
+                "[{\"userId\":\"" + id + "\",\"balance\":\"10.5\"},{\"balance\":1}]",
+                new TypeReference<List<UserAccount>>() {
+                });
+        assertEquals(id, accounts.get(0).getUserId());
+        assertEquals(new BigDecimal("10.5"), accounts.get(0).getBalance());
+        assertEquals(BigDecimal.ONE, accounts.get(1).getBalance());
+
+        TransferTransaction transaction = new TransferTransaction(id, UUID.randomUUID(), new BigDecimal("0.01"), 7);
+        assertEquals(transaction, mapper.readValue(mapper.writeValueAsString(transaction), TransferTransaction.class));
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testReadUnknownField() throws Exception {
+        mapper.readValue("{\"balance\":1,\"unknown\":{\"a\":[1]}}", UserAccount.class);
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testReadInvalidUuid() throws Exception {
+        mapper.readValue("{\"userId\":\"0000000g-0000-0000-0000-000000000000\"}", UserAccount.class);
+    }
+
+    @Test
+    public void testUuidConversion() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+
+            char[] buffer = new char[Uuids.LENGTH];
+            Uuids.write(uuid, buffer, 0);
+
+            assertEquals(uuid.toString(), new String(buffer));
+            assertEquals(uuid, Uuids.parse(uuid.toString()));
+            assertEquals(uuid, Uuids.parse(uuid.toString().toUpperCase()));
+        }
+
+        assertEquals(UUID.fromString("1-2-3-4-5"), Uuids.parse("1-2-3-4-5"));
+    }
+}
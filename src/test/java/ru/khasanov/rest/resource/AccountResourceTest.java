@@ -6,15 +6,24 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import ru.khasanov.rest.Main;
+import ru.khasanov.rest.model.TransferTransaction;
 import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.provider.BinaryMediaType;
+import ru.khasanov.rest.provider.BinaryMessageBodyProvider;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -199,4 +208,245 @@ public class AccountResourceTest {
         assertEquals(2, accounts.size());
     }
 
+    @Test
+    public void testGetAccountHistory() {
+        UUID id1 = createAccount();
+        UUID id2 = createAccount();
+        UUID id3 = createAccount();
+
+        transfer(id1, id2, BigDecimal.ONE);
+        transfer(id3, id1, BigDecimal.valueOf(2));
+        transfer(id2, id3, BigDecimal.valueOf(4));
+        transfer(id1, id3, BigDecimal.valueOf(3));
+
+        WebTarget historyTarget = target.path(id1.toString()).path(AccountResource.TRANSACTIONS);
+
+        // newest transactions first, transactions of other accounts are not listed
+        List<TransferTransaction> history = historyTarget.request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<TransferTransaction>>() {
+                });
+        assertEquals(3, history.size());
+        assertEquals(BigDecimal.valueOf(3), history.get(0).getAmount());
+        assertEquals(BigDecimal.valueOf(2), history.get(1).getAmount());
+        assertEquals(BigDecimal.ONE, history.get(2).getAmount());
+
+        List<TransferTransaction> page = historyTarget
+                .queryParam(AccountsRequestParameters.OFFSET, 1)
+                .queryParam(AccountsRequestParameters.COUNT, 1)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<TransferTransaction>>() {
+                });
+        assertEquals(history.subList(1, 2), page);
+
+        List<TransferTransaction> pastEnd = historyTarget
+                .queryParam(AccountsRequestParameters.OFFSET, 3)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<TransferTransaction>>() {
+                });
+        assertTrue(pastEnd.isEmpty());
+
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), historyTarget
+                .queryParam(AccountsRequestParameters.COUNT, 0)
+                .request(MediaType.APPLICATION_JSON).get().getStatus());
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), target.path(UUID.randomUUID().toString())
+                .path(AccountResource.TRANSACTIONS).request(MediaType.APPLICATION_JSON).get().getStatus());
+    }
+
+    @Test
+    public void testCreateAccountsBatch() {
+        List<UserAccount> accounts = Arrays.asList(
+                new UserAccount(UUID.randomUUID(), BigDecimal.TEN),
+                new UserAccount(UUID.randomUUID(), BigDecimal.ONE));
+
+        Response response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(accounts));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        List<UserAccount> actualAccounts = target.request(MediaType.APPLICATION_JSON).get(new GenericType<List<UserAccount>>() {
+        });
+        assertEquals(2, actualAccounts.size());
+    }
+
+    @Test
+    public void testGetTopAccounts() {
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        List<UserAccount> accounts = Arrays.asList(
+                new UserAccount(id1, BigDecimal.TEN),
+                new UserAccount(UUID.randomUUID(), BigDecimal.ONE),
+                new UserAccount(id2, BigDecimal.valueOf(100)));
+
+        Response response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(accounts));
+        assumeThat(response.getStatus(), Is.is(Response.Status.CREATED.getStatusCode()));
+
+        List<UserAccount> top = target.path(AccountResource.TOP)
+                .queryParam(AccountsRequestParameters.COUNT, 2)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<UserAccount>>() {
+                });
+
+        assertEquals(2, top.size());
+        assertEquals(id2, top.get(0).getUserId());
+        assertEquals(id1, top.get(1).getUserId());
+
+        Response badRequest = target.path(AccountResource.TOP)
+                .queryParam(AccountsRequestParameters.COUNT, 0)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), badRequest.getStatus());
+    }
+
+    @Test
+    public void testLookupAccounts() {
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        List<UserAccount> accounts = Arrays.asList(
+                new UserAccount(id1, BigDecimal.TEN),
+                new UserAccount(id2, BigDecimal.ONE),
+                new UserAccount(UUID.randomUUID(), BigDecimal.ZERO));
+
+        Response response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(accounts));
+        assumeThat(response.getStatus(), Is.is(Response.Status.CREATED.getStatusCode()));
+
+        List<UserAccount> actualAccounts = target.path(AccountResource.LOOKUP).request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(Arrays.asList(id1, UUID.randomUUID(), id2)), new GenericType<List<UserAccount>>() {
+                });
+
+        assertEquals(2, actualAccounts.size());
+        assertEquals(id1, actualAccounts.get(0).getUserId());
+        assertEquals(BigDecimal.TEN, actualAccounts.get(0).getBalance());
+        assertEquals(id2, actualAccounts.get(1).getUserId());
+        assertEquals(BigDecimal.ONE, actualAccounts.get(1).getBalance());
+    }
+
+    @Test
+    public void testConditionalGetAccount() {
+        String id = UUID.randomUUID().toString();
+        Response responseMsg = target.queryParam(AccountsRequestParameters.ID, id)
+                .request(MediaType.APPLICATION_JSON).post(Entity.json(""));
+        assumeThat(responseMsg.getStatus(), Is.is(Response.Status.CREATED.getStatusCode()));
+
+        Response response = target.path(id).request(MediaType.APPLICATION_JSON).get();
+        assumeThat(response.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        EntityTag tag = response.getEntityTag();
+        assertTrue(tag != null);
+
+        Response conditionalResponse = target.path(id).request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), conditionalResponse.getStatus());
+    }
+
+    @Test
+    public void testConditionalGetAccountsList() {
+        Response response = target.request(MediaType.APPLICATION_JSON).get();
+        assumeThat(response.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        EntityTag tag = response.getEntityTag();
+
+        Response conditionalResponse = target.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), conditionalResponse.getStatus());
+
+        Response responseMsg = target.request(MediaType.APPLICATION_JSON).post(Entity.json(""));
+        assumeThat(responseMsg.getStatus(), Is.is(Response.Status.CREATED.getStatusCode()));
+
+        conditionalResponse = target.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(Response.Status.OK.getStatusCode(), conditionalResponse.getStatus());
+        assertEquals(1, conditionalResponse.readEntity(new GenericType<List<UserAccount>>() {
+        }).size());
+    }
+
+    @Test
+    public void testCreateAndGetAccountsBinary() {
+        UUID id = UUID.randomUUID();
+        List<UserAccount> accounts = Arrays.asList(new UserAccount(id, new BigDecimal("12.50")));
+
+        WebTarget binaryTarget = ClientBuilder.newClient()
+                .register(BinaryMessageBodyProvider.class)
+                .target(Main.BASE_URI)
+                .path(AccountResource.ACCOUNTS);
+
+        Response response = binaryTarget.path(AccountResource.BATCH).request(BinaryMediaType.APPLICATION_BINARY_TYPE)
+                .post(Entity.entity(new GenericEntity<List<UserAccount>>(accounts) {
+                }, BinaryMediaType.APPLICATION_BINARY_TYPE));
+        assumeThat(response.getStatus(), Is.is(Response.Status.CREATED.getStatusCode()));
+
+        UserAccount account = binaryTarget.path(id.toString()).request(BinaryMediaType.APPLICATION_BINARY_TYPE)
+                .get(UserAccount.class);
+
+        assertEquals(id, account.getUserId());
+        assertEquals(new BigDecimal("12.50"), account.getBalance());
+    }
+
+    @Test
+    public void testRepresentationsHaveDifferentTags() {
+        Response json = target.request(MediaType.APPLICATION_JSON).get();
+        assumeThat(json.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        Response binary = target.request(BinaryMediaType.APPLICATION_BINARY_TYPE).get();
+        assumeThat(binary.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        assertFalse(json.getEntityTag().equals(binary.getEntityTag()));
+        assertTrue(json.getHeaderString(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+
+        Response conditionalResponse = target.request(BinaryMediaType.APPLICATION_BINARY_TYPE)
+                .header(HttpHeaders.IF_NONE_MATCH, json.getEntityTag()).get();
+        assertEquals(Response.Status.OK.getStatusCode(), conditionalResponse.getStatus());
+    }
+
+    @Test
+    public void testBatchWithNullAccountIsRejected() {
+        Response response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.json("[null]"));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        List<UserAccount> actualAccounts = target.request(MediaType.APPLICATION_JSON).get(new GenericType<List<UserAccount>>() {
+        });
+        assertTrue(actualAccounts.isEmpty());
+    }
+
+    @Test
+    public void testInvalidBinaryBatchIsRejected() {
+        // list claims more accounts than the entity holds
+        byte[] entity = ByteBuffer.allocate(Integer.BYTES).putInt(Integer.MAX_VALUE).array();
+        Response response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(entity, BinaryMediaType.APPLICATION_BINARY_TYPE));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        entity = ByteBuffer.allocate(Integer.BYTES).putInt(-1).array();
+        response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(entity, BinaryMediaType.APPLICATION_BINARY_TYPE));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        entity = ByteBuffer.allocate(Integer.BYTES + 10).putInt(1).array();
+        response = target.path(AccountResource.BATCH).request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(entity, BinaryMediaType.APPLICATION_BINARY_TYPE));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    private UUID createAccount() {
+        UUID id = UUID.randomUUID();
+        Response response = target.queryParam(AccountsRequestParameters.ID, id)
+                .queryParam(AccountsRequestParameters.BALANCE, BigDecimal.valueOf(100))
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assumeThat(response.getStatus(), Is.is(Response.Status.CREATED.getStatusCode()));
+        return id;
+    }
+
+    private void transfer(UUID fromId, UUID toId, BigDecimal amount) {
+        Response response = ClientBuilder.newClient().target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                .queryParam(TransferQueryParameters.FROM, fromId)
+                .queryParam(TransferQueryParameters.TO, toId)
+                .queryParam(TransferQueryParameters.AMOUNT, amount)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assumeThat(response.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+    }
 }
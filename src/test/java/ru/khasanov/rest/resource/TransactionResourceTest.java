@@ -1,26 +1,48 @@
 package ru.khasanov.rest.resource;
 
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.media.sse.EventInput;
+import org.glassfish.jersey.media.sse.InboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.hamcrest.core.Is;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import ru.khasanov.rest.ApplicationService;
 import ru.khasanov.rest.Main;
+import ru.khasanov.rest.config.ServiceConfiguration;
+import ru.khasanov.rest.manage.HistoryCompactor;
+import ru.khasanov.rest.manage.RateLimiter;
+import ru.khasanov.rest.model.Hold;
+import ru.khasanov.rest.model.ScheduledTransfer;
 import ru.khasanov.rest.model.TransferTransaction;
 import ru.khasanov.rest.model.UserAccount;
+import ru.khasanov.rest.provider.BinaryMediaType;
+import ru.khasanov.rest.provider.BinaryMessageBodyProvider;
+import ru.khasanov.rest.provider.CompressionInterceptor;
+import ru.khasanov.rest.storage.TransactionQuery;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Properties;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeThat;
 
 /**
@@ -72,6 +94,69 @@ public class TransactionResourceTest {
         assertEquals(BigDecimal.valueOf(110), toAccount.getBalance());
     }
 
+    @Test
+    public void testRetryTransferWithIdempotencyKey() {
+        UUID from = createUserAccount();
+        UUID to = createUserAccount();
+        String key = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 3; i++) {
+            Response transferResponse = target
+                    .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                    .queryParam(TransferQueryParameters.FROM, from)
+                    .queryParam(TransferQueryParameters.TO, to)
+                    .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10))
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(TransactionsResource.IDEMPOTENCY_KEY, key)
+                    .post(Entity.json(""));
+
+            assertEquals(Response.Status.OK.getStatusCode(), transferResponse.getStatus());
+        }
+
+        assertEquals(BigDecimal.valueOf(90), getAccount(from).getBalance());
+        assertEquals(BigDecimal.valueOf(110), getAccount(to).getBalance());
+
+        Response reusedKeyResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                .queryParam(TransferQueryParameters.FROM, to)
+                .queryParam(TransferQueryParameters.TO, from)
+                .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10))
+                .request(MediaType.APPLICATION_JSON)
+                .header(TransactionsResource.IDEMPOTENCY_KEY, key)
+                .post(Entity.json(""));
+
+        assertEquals(422, reusedKeyResponse.getStatus());
+    }
+
+    @Test
+    public void testRetryWithIdempotencyKeyIsNotLimited() {
+        UUID from = createUserAccount();
+        UUID to = createUserAccount();
+        String key = UUID.randomUUID().toString();
+
+        ApplicationService.getInstance().initRateLimiters(new RateLimiter(0.1, 1), new RateLimiter(0.1, 1));
+        try {
+            WebTarget transferTarget = target
+                    .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                    .queryParam(TransferQueryParameters.FROM, from)
+                    .queryParam(TransferQueryParameters.TO, to)
+                    .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10));
+
+            // retries get outcome of the first request without taking tokens
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Response.Status.OK.getStatusCode(), transferTarget.request(MediaType.APPLICATION_JSON)
+                        .header(TransactionsResource.IDEMPOTENCY_KEY, key).post(Entity.json("")).getStatus());
+            }
+            assertEquals(BigDecimal.valueOf(90), getAccount(from).getBalance());
+
+            assertEquals(429, transferTarget.request(MediaType.APPLICATION_JSON)
+                    .header(TransactionsResource.IDEMPOTENCY_KEY, UUID.randomUUID().toString())
+                    .post(Entity.json("")).getStatus());
+        } finally {
+            ApplicationService.getInstance().initRateLimiters(null, null);
+        }
+    }
+
     @Test
     public void testTransferNegativeAmount() {
         UUID from = createUserAccount();
@@ -364,6 +449,521 @@ public class TransactionResourceTest {
         assertEquals(2, transactions.size());
     }
 
+    @Test
+    public void testStreamTransactions() {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        Response transferResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                .queryParam(TransferQueryParameters.FROM, id1)
+                .queryParam(TransferQueryParameters.TO, id2)
+                .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10))
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+
+        assumeThat(transferResponse.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        EventInput eventInput = ClientBuilder.newBuilder().register(SseFeature.class).build()
+                .target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.STREAM)
+                .queryParam(TransactionsRequestParameters.FROM_POSITION, 0)
+                .request(SseFeature.SERVER_SENT_EVENTS)
+                .get(EventInput.class);
+
+        InboundEvent event = eventInput.read();
+        eventInput.close();
+
+        assertEquals("0", event.getId());
+        assertEquals(TransactionsResource.TRANSACTION_EVENT, event.getName());
+
+        TransferTransaction transaction = event.readData(TransferTransaction.class, MediaType.APPLICATION_JSON_TYPE);
+        assertEquals(id1, transaction.getFrom());
+        assertEquals(id2, transaction.getTo());
+    }
+
+    @Test
+    public void testConditionalGetTransactions() {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        Response response = target.path(TransactionsResource.TRANSACTIONS).request(MediaType.APPLICATION_JSON).get();
+        assumeThat(response.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        EntityTag tag = response.getEntityTag();
+
+        Response conditionalResponse = target.path(TransactionsResource.TRANSACTIONS)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, tag)
+                .get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), conditionalResponse.getStatus());
+
+        Response transferResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                .queryParam(TransferQueryParameters.FROM, id1)
+                .queryParam(TransferQueryParameters.TO, id2)
+                .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10))
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assumeThat(transferResponse.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        conditionalResponse = target.path(TransactionsResource.TRANSACTIONS)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, tag)
+                .get();
+        assertEquals(Response.Status.OK.getStatusCode(), conditionalResponse.getStatus());
+        assertEquals(1, conditionalResponse.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).size());
+    }
+
+    @Test
+    public void testRequestTransactionsBinary() {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        Response transferResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                .queryParam(TransferQueryParameters.FROM, id1)
+                .queryParam(TransferQueryParameters.TO, id2)
+                .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal("10.25"))
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assumeThat(transferResponse.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+
+        List<TransferTransaction> transactions = ClientBuilder.newClient()
+                .register(BinaryMessageBodyProvider.class)
+                .target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS)
+                .request(BinaryMediaType.APPLICATION_BINARY_TYPE)
+                .get(new GenericType<List<TransferTransaction>>() {
+                });
+
+        assertEquals(1, transactions.size());
+        assertEquals(id1, transactions.get(0).getFrom());
+        assertEquals(id2, transactions.get(0).getTo());
+        assertEquals(new BigDecimal("10.25"), transactions.get(0).getAmount());
+    }
+
+    @Test
+    public void testCompressedTransactions() {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        WebTarget transactionsTarget = ClientBuilder.newClient()
+                .register(GZipEncoder.class)
+                .target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS);
+
+        Response smallResponse = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.GZIP)
+                .get();
+        assertNull(smallResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+
+        for (int i = 0; i < 20; i++) {
+            transfer(id1, id2, BigDecimal.ONE);
+        }
+
+        Response response = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.GZIP)
+                .get();
+
+        assertEquals(CompressionInterceptor.GZIP, response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(20, response.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).size());
+    }
+
+    @Test
+    public void testCompressedEntityTag() {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        for (int i = 0; i < 20; i++) {
+            transfer(id1, id2, BigDecimal.ONE);
+        }
+
+        WebTarget transactionsTarget = target.path(TransactionsResource.TRANSACTIONS);
+
+        Response identity = transactionsTarget.request(MediaType.APPLICATION_JSON).get();
+        identity.close();
+        Response compressed = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.GZIP)
+                .get();
+        compressed.close();
+
+        assertEquals(CompressionInterceptor.GZIP, compressed.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        EntityTag tag = compressed.getEntityTag();
+        assertFalse(identity.getEntityTag().equals(tag));
+
+        Response notModified = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.GZIP)
+                .header(HttpHeaders.IF_NONE_MATCH, tag)
+                .get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), notModified.getStatus());
+        assertEquals(tag, notModified.getEntityTag());
+    }
+
+    @Test
+    public void testCompressedClosedWindowTransactions() throws InterruptedException {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        for (int i = 0; i < 20; i++) {
+            transfer(id1, id2, BigDecimal.ONE);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        Thread.sleep(1100);
+
+        WebTarget transactionsTarget = ClientBuilder.newClient()
+                .register(DeflateEncoder.class)
+                .target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS)
+                .queryParam(TransactionsRequestParameters.TO_DATE, timestamp);
+
+        for (int i = 0; i < 2; i++) {
+            Response response = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.DEFLATE)
+                    .get();
+
+            assertEquals(CompressionInterceptor.DEFLATE, response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+            assertTrue(response.getHeaderString(HttpHeaders.CACHE_CONTROL).contains("max-age"));
+            assertEquals(20, response.readEntity(new GenericType<List<TransferTransaction>>() {
+            }).size());
+        }
+    }
+
+    @Test
+    public void testClosedWindowRefreshedAfterCompaction() throws Exception {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        for (int i = 0; i < 20; i++) {
+            transfer(id1, id2, BigDecimal.ONE);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        Thread.sleep(1100);
+
+        WebTarget transactionsTarget = ClientBuilder.newClient()
+                .register(DeflateEncoder.class)
+                .target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS)
+                .queryParam(TransactionsRequestParameters.TO_DATE, timestamp);
+
+        Response before = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.DEFLATE)
+                .get();
+        assertEquals(CompressionInterceptor.DEFLATE, before.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(20, before.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).size());
+
+        for (UUID id : new UUID[]{id1, id2}) {
+            assertEquals(Response.Status.OK.getStatusCode(), target.path(AccountResource.ACCOUNTS + "/" + id)
+                    .request(MediaType.APPLICATION_JSON).delete().getStatus());
+        }
+
+        HistoryCompactor historyCompactor = ApplicationService.getInstance().getHistoryCompactor();
+        historyCompactor.setRetention(0);
+
+        // closed period may change as soon as compaction is due
+        Response due = transactionsTarget.request(MediaType.APPLICATION_JSON).get();
+        assertNull(due.getHeaderString(HttpHeaders.CACHE_CONTROL));
+        due.close();
+
+        assertEquals(2, historyCompactor.compact());
+
+        Response after = transactionsTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, CompressionInterceptor.DEFLATE)
+                .get();
+        assertFalse(before.getEntityTag().equals(after.getEntityTag()));
+        assertTrue(after.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).isEmpty());
+    }
+
+    @Test
+    public void testClosedWindowServedFromHistoryCache() throws InterruptedException {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+
+        for (int i = 0; i < 3; i++) {
+            transfer(id1, id2, BigDecimal.ONE);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        Thread.sleep(1100);
+        transfer(id1, id2, BigDecimal.ONE);
+
+        WebTarget transactionsTarget = target.path(TransactionsResource.TRANSACTIONS)
+                .queryParam(TransactionsRequestParameters.TO_DATE, timestamp)
+                .queryParam(TransactionsRequestParameters.EXPLAIN, true);
+
+        Response first = transactionsTarget.request(MediaType.APPLICATION_JSON).get();
+        assertTrue(first.getHeaderString(TransactionsResource.QUERY_PLAN).startsWith("TIME_RANGE"));
+        assertEquals(3, first.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).size());
+
+        Response second = transactionsTarget.request(MediaType.APPLICATION_JSON).get();
+        assertEquals("HISTORY_CACHE", second.getHeaderString(TransactionsResource.QUERY_PLAN));
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, second.getMediaType());
+        assertEquals(3, second.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).size());
+
+        List<TransferTransaction> binary = ClientBuilder.newClient()
+                .register(BinaryMessageBodyProvider.class)
+                .target(Main.BASE_URI)
+                .path(TransactionsResource.TRANSACTIONS)
+                .queryParam(TransactionsRequestParameters.TO_DATE, timestamp)
+                .request(BinaryMediaType.APPLICATION_BINARY_TYPE)
+                .get(new GenericType<List<TransferTransaction>>() {
+                });
+        assertEquals(3, binary.size());
+
+        Response openWindow = target.path(TransactionsResource.TRANSACTIONS)
+                .queryParam(TransactionsRequestParameters.EXPLAIN, true)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals("FULL_SCAN", openWindow.getHeaderString(TransactionsResource.QUERY_PLAN).split(" ")[0]);
+    }
+
+    @Test
+    public void testPreSerializedJsonTransactions() throws Exception {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+        transfer(id1, id2, new BigDecimal("10.25"));
+        transfer(id2, id1, BigDecimal.ONE);
+
+        String expected = target.path(TransactionsResource.TRANSACTIONS)
+                .request(MediaType.APPLICATION_JSON)
+                .get(String.class);
+
+        server.shutdownNow();
+        Properties properties = new Properties();
+        properties.setProperty(ServiceConfiguration.JSON_PRE_SERIALIZED, "true");
+        server = Main.startServer(new ServiceConfiguration(properties));
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, target.path(TransactionsResource.TRANSACTIONS)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(String.class));
+        }
+
+        assertEquals(2, target.path(TransactionsResource.TRANSACTIONS)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<TransferTransaction>>() {
+                }).size());
+
+        List<TransferTransaction> stored = ApplicationService.getInstance().getTransactionManager()
+                .getTransactions(new TransactionQuery(null, null, null, null));
+        assertEquals(expected, "[" + new String(stored.get(0).getJson(), StandardCharsets.UTF_8)
+                + "," + new String(stored.get(1).getJson(), StandardCharsets.UTF_8) + "]");
+    }
+
+    @Test
+    public void testExplainTransactionsQuery() {
+        UUID id1 = createUserAccount();
+        UUID id2 = createUserAccount();
+        transfer(id1, id2, BigDecimal.ONE);
+        transfer(id2, id1, BigDecimal.ONE);
+
+        Response response = target.path(TransactionsResource.TRANSACTIONS)
+                .queryParam(TransactionsRequestParameters.FROM_ID, id1)
+                .queryParam(TransactionsRequestParameters.EXPLAIN, true)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertTrue(response.getHeaderString(TransactionsResource.QUERY_PLAN).startsWith("FROM_POSTINGS"));
+        assertEquals(1, response.readEntity(new GenericType<List<TransferTransaction>>() {
+        }).size());
+
+        Response plainResponse = target.path(TransactionsResource.TRANSACTIONS)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        assertNull(plainResponse.getHeaderString(TransactionsResource.QUERY_PLAN));
+    }
+
+    private void transfer(UUID from, UUID to, BigDecimal amount) {
+        Response transferResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                .queryParam(TransferQueryParameters.FROM, from)
+                .queryParam(TransferQueryParameters.TO, to)
+                .queryParam(TransferQueryParameters.AMOUNT, amount)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assumeThat(transferResponse.getStatus(), Is.is(Response.Status.OK.getStatusCode()));
+    }
+
+    @Test
+    public void testHoldAndCapture() {
+        UUID from = createUserAccount();
+        UUID to = createUserAccount();
+
+        Response holdResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.HOLDS)
+                .queryParam(TransferQueryParameters.FROM, from)
+                .queryParam(TransferQueryParameters.TO, to)
+                .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(40))
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assertEquals(Response.Status.OK.getStatusCode(), holdResponse.getStatus());
+
+        Hold hold = holdResponse.readEntity(Hold.class);
+        assertEquals(from, hold.getFrom());
+        assertEquals(0, BigDecimal.valueOf(40).compareTo(hold.getAmount()));
+        assertEquals(BigDecimal.valueOf(100), getAccount(from).getBalance());
+
+        Response captureResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.HOLDS)
+                .path(hold.getId().toString())
+                .path(TransactionsResource.CAPTURE)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assertEquals(Response.Status.OK.getStatusCode(), captureResponse.getStatus());
+
+        assertEquals(BigDecimal.valueOf(60), getAccount(from).getBalance());
+        assertEquals(BigDecimal.valueOf(140), getAccount(to).getBalance());
+
+        Response releaseResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.HOLDS)
+                .path(hold.getId().toString())
+                .path(TransactionsResource.RELEASE)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), releaseResponse.getStatus());
+
+        Response getResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.HOLDS)
+                .path(hold.getId().toString())
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), getResponse.getStatus());
+    }
+
+    @Test
+    public void testScheduleTransfer() throws InterruptedException {
+        UUID from = createUserAccount();
+        UUID to = createUserAccount();
+
+        Response scheduleResponse = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.SCHEDULED)
+                .queryParam(TransferQueryParameters.FROM, from)
+                .queryParam(TransferQueryParameters.TO, to)
+                .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(25))
+                .queryParam(TransferQueryParameters.EXECUTE_AT, System.currentTimeMillis() + 200)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+        assertEquals(Response.Status.OK.getStatusCode(), scheduleResponse.getStatus());
+        ScheduledTransfer transfer = scheduleResponse.readEntity(ScheduledTransfer.class);
+
+        WebTarget transferTarget = target
+                .path(TransactionsResource.TRANSACTIONS + TransactionsResource.SCHEDULED)
+                .path(transfer.getId().toString());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transferTarget.request(MediaType.APPLICATION_JSON).get().getStatus() == Response.Status.OK.getStatusCode()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(BigDecimal.valueOf(75), getAccount(from).getBalance());
+        assertEquals(BigDecimal.valueOf(125), getAccount(to).getBalance());
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(),
+                transferTarget.request(MediaType.APPLICATION_JSON).delete().getStatus());
+    }
+
+    @Test
+    public void testTransferRateLimit() {
+        UUID from = createUserAccount();
+        UUID to = createUserAccount();
+
+        ApplicationService.getInstance().initRateLimiters(new RateLimiter(0.1, 2), null);
+        try {
+            for (int i = 0; i < 3; i++) {
+                Response transferResponse = target
+                        .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                        .queryParam(TransferQueryParameters.FROM, from)
+                        .queryParam(TransferQueryParameters.TO, to)
+                        .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10))
+                        .request(MediaType.APPLICATION_JSON)
+                        .post(Entity.json(""));
+
+                if (i < 2) {
+                    assertEquals(Response.Status.OK.getStatusCode(), transferResponse.getStatus());
+                } else {
+                    assertEquals(429, transferResponse.getStatus());
+                    int retryAfter = Integer.parseInt(transferResponse.getHeaderString(HttpHeaders.RETRY_AFTER));
+                    assertTrue(retryAfter > 0 && retryAfter <= 10);
+                }
+            }
+
+            // transfers from other accounts are not affected
+            Response otherResponse = target
+                    .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                    .queryParam(TransferQueryParameters.FROM, to)
+                    .queryParam(TransferQueryParameters.TO, from)
+                    .queryParam(TransferQueryParameters.AMOUNT, new BigDecimal(10))
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.json(""));
+            assertEquals(Response.Status.OK.getStatusCode(), otherResponse.getStatus());
+        } finally {
+            ApplicationService.getInstance().initRateLimiters(null, null);
+        }
+
+        assertEquals(BigDecimal.valueOf(90), getAccount(from).getBalance());
+    }
+
+    @Test
+    public void testClientRateLimit() {
+        UUID from = createUserAccount();
+        UUID to = createUserAccount();
+
+        ApplicationService.getInstance().initRateLimiters(null, new RateLimiter(0.1, 1));
+        try {
+            WebTarget transferTarget = target
+                    .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                    .queryParam(TransferQueryParameters.FROM, from)
+                    .queryParam(TransferQueryParameters.TO, to)
+                    .queryParam(TransferQueryParameters.AMOUNT, BigDecimal.ONE);
+
+            // clients are identified by address, whatever they claim about themselves
+            assertEquals(Response.Status.OK.getStatusCode(),
+                    transferTarget.request(MediaType.APPLICATION_JSON).post(Entity.json("")).getStatus());
+            assertEquals(429, transferTarget.request(MediaType.APPLICATION_JSON)
+                    .header("X-Client-Id", "client").post(Entity.json("")).getStatus());
+        } finally {
+            ApplicationService.getInstance().initRateLimiters(null, null);
+        }
+    }
+
+    @Test
+    public void testRejectedRequestKeepsOtherLimit() {
+        UUID first = createUserAccount();
+        UUID second = createUserAccount();
+
+        ApplicationService.getInstance().initRateLimiters(new RateLimiter(0.1, 1), new RateLimiter(0.1, 2));
+        try {
+            WebTarget transferTarget = target
+                    .path(TransactionsResource.TRANSACTIONS + TransactionsResource.TRANSFER)
+                    .queryParam(TransferQueryParameters.AMOUNT, BigDecimal.ONE);
+            WebTarget fromFirst = transferTarget
+                    .queryParam(TransferQueryParameters.FROM, first)
+                    .queryParam(TransferQueryParameters.TO, second);
+            WebTarget fromSecond = transferTarget
+                    .queryParam(TransferQueryParameters.FROM, second)
+                    .queryParam(TransferQueryParameters.TO, first);
+
+            assertEquals(Response.Status.OK.getStatusCode(),
+                    fromFirst.request(MediaType.APPLICATION_JSON).post(Entity.json("")).getStatus());
+            assertEquals(429, fromFirst.request(MediaType.APPLICATION_JSON).post(Entity.json("")).getStatus());
+
+            // transfer rejected by account limit took no token of the client
+            assertEquals(Response.Status.OK.getStatusCode(),
+                    fromSecond.request(MediaType.APPLICATION_JSON).post(Entity.json("")).getStatus());
+        } finally {
+            ApplicationService.getInstance().initRateLimiters(null, null);
+        }
+    }
+
     private UUID createUserAccount() {
         UUID id = UUID.randomUUID();
         BigDecimal balance = BigDecimal.valueOf(100);
@@ -0,0 +1,128 @@
+package ru.khasanov.rest.storage;
+
+import org.junit.Test;
+import ru.khasanov.rest.model.TransferTransaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ScanKernel} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class ScanKernelTest {
+
+    @Test
+    public void testSelectSetsBitsOfMatchingTransactions() {
+        UUID from = UUID.randomUUID();
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < ScanKernel.BLOCK_SIZE; i++) {
+            log.add(new TransferTransaction(i % 2 == 0 ? from : UUID.randomUUID(), UUID.randomUUID(), BigDecimal.ONE, i));
+        }
+
+        ScanKernel kernel = new ScanKernel(new TransactionQuery(from, null, 10L, null));
+
+        long expected = 0;
+        for (int i = 10; i < ScanKernel.BLOCK_SIZE; i += 2) {
+            expected |= 1L << i;
+        }
+        assertEquals(expected, kernel.select(log.chunk(0), 0, ScanKernel.BLOCK_SIZE));
+        assertEquals(expected >>> 1 & 0xFFL, kernel.select(log.chunk(0), 1, 8));
+    }
+
+    @Test
+    public void testSealedSegmentsAreSkipped() {
+        UUID rare = UUID.randomUUID();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(UUID.randomUUID());
+        }
+
+        // timestamps of every chunk are shuffled within its own range, and rare transmitter is only in the last chunk
+        Random random = new Random(42);
+        TransactionLog log = new TransactionLog();
+        for (int chunk = 0; chunk < 3; chunk++) {
+            for (int i = 0; i < TransactionLog.CHUNK_SIZE; i++) {
+                UUID from = chunk == 2 && i == 100 ? rare : ids.get(random.nextInt(ids.size()));
+                log.add(new TransferTransaction(from, ids.get(random.nextInt(ids.size())), BigDecimal.ONE,
+                        chunk * 1_000_000 + random.nextInt(1_000_000)));
+            }
+        }
+
+        ScanKernel timeKernel = new ScanKernel(new TransactionQuery(null, null, 1_000_000L, 1_999_999L));
+        assertFalse(timeKernel.mayMatch(log.chunk(0).summary));
+        assertTrue(timeKernel.mayMatch(log.chunk(TransactionLog.CHUNK_SIZE).summary));
+        assertFalse(timeKernel.mayMatch(log.chunk(2 * TransactionLog.CHUNK_SIZE).summary));
+        assertEquals(TransactionLog.CHUNK_SIZE, timeKernel.countCandidates(log, 0, log.size()));
+
+        ScanKernel idKernel = new ScanKernel(new TransactionQuery(rare, null, null, null));
+        assertTrue(idKernel.mayMatch(log.chunk(2 * TransactionLog.CHUNK_SIZE).summary));
+        assertTrue(idKernel.countCandidates(log, 0, log.size()) < log.size());
+
+        List<TransferTransaction> result = new ArrayList<>();
+        idKernel.scan(log, 0, log.size(), result);
+        assertEquals(1, result.size());
+        assertEquals(rare, result.get(0).getFrom());
+    }
+
+    @Test
+    public void testSummaryIsPublishedWhenChunkIsFull() {
+        UUID from = UUID.randomUUID();
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < TransactionLog.CHUNK_SIZE - 1; i++) {
+            log.add(new TransferTransaction(from, UUID.randomUUID(), BigDecimal.ONE, 1000 + i));
+        }
+        assertNull(log.chunk(0).summary);
+
+        log.add(new TransferTransaction(UUID.randomUUID(), UUID.randomUUID(), BigDecimal.ONE, 5));
+        SegmentSummary summary = log.chunk(0).summary;
+        assertEquals(5, summary.minTimestamp);
+        assertEquals(1000 + TransactionLog.CHUNK_SIZE - 2, summary.maxTimestamp);
+        assertTrue(new ScanKernel(new TransactionQuery(from, null, null, null)).mayMatch(summary));
+    }
+
+    @Test
+    public void testScanMatchesQuery() {
+        Random random = new Random(42);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(UUID.randomUUID());
+        }
+
+        TransactionLog log = new TransactionLog();
+        List<TransferTransaction> all = new ArrayList<>();
+        for (int i = 0; i < TransactionLog.CHUNK_SIZE + 1000; i++) {
+            TransferTransaction transaction = new TransferTransaction(ids.get(random.nextInt(ids.size())),
+                    ids.get(random.nextInt(ids.size())), BigDecimal.ONE, random.nextInt(1000));
+            log.add(transaction);
+            all.add(transaction);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            TransactionQuery query = new TransactionQuery(
+                    random.nextBoolean() ? ids.get(random.nextInt(ids.size())) : null,
+                    random.nextBoolean() ? ids.get(random.nextInt(ids.size())) : null,
+                    random.nextBoolean() ? (long) random.nextInt(1000) : null,
+                    random.nextBoolean() ? (long) random.nextInt(1000) : null);
+            int from = random.nextInt(all.size());
+            int to = from + random.nextInt(all.size() - from + 1);
+
+            List<TransferTransaction> result = new ArrayList<>();
+            new ScanKernel(query).scan(log, from, to, result);
+
+            assertEquals(query.toString(),
+                    all.subList(from, to).stream().filter(query::matches).collect(Collectors.toList()), result);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package ru.khasanov.rest.storage;
+
+import org.junit.Test;
+import ru.khasanov.rest.model.TransferTransaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link TransactionStorage} class
+ *
+ * @author Aleksandr Khasanov
+ */
+public class TransactionStorageTest {
+
+    @Test
+    public void testPlansMatchFullScan() {
+        checkPlansMatchFullScan(false);
+    }
+
+    @Test
+    public void testPlansMatchFullScanWithUnorderedTimestamps() {
+        checkPlansMatchFullScan(true);
+    }
+
+    @Test
+    public void testPlanChoosesSelectiveAccessPath() {
+        TransactionStorage transactionStorage = new TransactionStorage();
+
+        UUID rare = UUID.randomUUID();
+        UUID frequent = UUID.randomUUID();
+        for (int i = 0; i < 1000; i++) {
+            UUID from = i % 100 == 0 ? rare : frequent;
+            transactionStorage.addTransaction(new TransferTransaction(from, UUID.randomUUID(), BigDecimal.ONE, i));
+        }
+
+        assertEquals(QueryPlan.AccessPath.FULL_SCAN,
+                transactionStorage.plan(new TransactionQuery(null, null, null, null)).getAccessPath());
+        assertEquals(QueryPlan.AccessPath.FROM_POSTINGS,
+                transactionStorage.plan(new TransactionQuery(rare, null, null, null)).getAccessPath());
+        assertEquals(QueryPlan.AccessPath.TIME_RANGE,
+                transactionStorage.plan(new TransactionQuery(null, null, 100L, 120L)).getAccessPath());
+        assertEquals(QueryPlan.AccessPath.FROM_POSTINGS,
+                transactionStorage.plan(new TransactionQuery(rare, null, 100L, 900L)).getAccessPath());
+        assertEquals(0,
+                transactionStorage.plan(new TransactionQuery(UUID.randomUUID(), null, null, null)).getEstimatedRows());
+    }
+
+    @Test
+    public void testPlanIntersectsPostings() {
+        TransactionStorage transactionStorage = new TransactionStorage();
+
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        for (int i = 0; i < 1000; i++) {
+            transactionStorage.addTransaction(new TransferTransaction(
+                    i % 5 == 0 ? from : UUID.randomUUID(), i % 5 == 1 ? to : UUID.randomUUID(), BigDecimal.ONE, i));
+        }
+        transactionStorage.addTransaction(new TransferTransaction(from, to, BigDecimal.ONE, 1000));
+
+        TransactionQuery query = new TransactionQuery(from, to, null, null);
+        assertEquals(QueryPlan.AccessPath.POSTINGS_INTERSECTION, transactionStorage.plan(query).getAccessPath());
+        assertEquals(1, transactionStorage.getTransactions(query).size());
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialScan() throws InterruptedException, ExecutionException {
+        Random random = new Random(42);
+        TransactionStorage transactionStorage = new TransactionStorage();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        for (int i = 0; i < 5 * TransactionStorage.SCAN_SEGMENT_SIZE + 123; i++) {
+            transactionStorage.addTransaction(new TransferTransaction(ids.get(random.nextInt(ids.size())),
+                    ids.get(random.nextInt(ids.size())), BigDecimal.valueOf(random.nextInt(100)), i));
+        }
+
+        List<TransactionQuery> queries = new ArrayList<>();
+        queries.add(new TransactionQuery(null, null, null, null));
+        queries.add(new TransactionQuery(null, null, 1000L, 30000L));
+        queries.add(new TransactionQuery(null, null, 50000L, 10L));
+        for (TransactionQuery query : queries) {
+            QueryPlan plan = transactionStorage.plan(query);
+
+            assertEquals(query.toString(), transactionStorage.getTransactions(query, plan),
+                    transactionStorage.scanInParallel(query, plan, pool).get());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAccountHistoryPages() {
+        Random random = new Random(42);
+        TransactionStorage transactionStorage = new TransactionStorage();
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(UUID.randomUUID());
+        }
+
+        List<TransferTransaction> all = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            TransferTransaction transaction = new TransferTransaction(ids.get(random.nextInt(ids.size())),
+                    ids.get(random.nextInt(ids.size())), BigDecimal.ONE, i);
+            if (transactionStorage.addTransaction(transaction) >= 0) {
+                all.add(transaction);
+            }
+        }
+
+        UUID userId = ids.get(0);
+        List<TransferTransaction> history = all.stream()
+                .filter(t -> t.getFrom().equals(userId) || t.getTo().equals(userId))
+                .collect(Collectors.toList());
+        Collections.reverse(history);
+
+        assertEquals(history, transactionStorage.getAccountHistory(userId, 0, Integer.MAX_VALUE));
+        assertEquals(history.subList(0, 20), transactionStorage.getAccountHistory(userId, 0, 20));
+        assertEquals(history.subList(100, 150), transactionStorage.getAccountHistory(userId, 100, 50));
+        assertEquals(history.subList(history.size() - 5, history.size()),
+                transactionStorage.getAccountHistory(userId, history.size() - 5, 20));
+        assertTrue(transactionStorage.getAccountHistory(UUID.randomUUID(), 0, 20).isEmpty());
+    }
+
+    @Test
+    public void testNetFlowMatchesReplay() {
+        checkNetFlowMatchesReplay(false);
+    }
+
+    @Test
+    public void testNetFlowMatchesReplayWithUnorderedTimestamps() {
+        checkNetFlowMatchesReplay(true);
+    }
+
+    private void checkNetFlowMatchesReplay(boolean unordered) {
+        Random random = new Random(42);
+        TransactionStorage transactionStorage = new TransactionStorage();
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(UUID.randomUUID());
+        }
+
+        List<TransferTransaction> all = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long timestamp = unordered ? random.nextInt(1000) : i / 2;
+            TransferTransaction transaction = new TransferTransaction(ids.get(random.nextInt(ids.size())),
+                    ids.get(random.nextInt(ids.size())), BigDecimal.valueOf(random.nextInt(100)), timestamp);
+            if (transactionStorage.addTransaction(transaction) >= 0) {
+                all.add(transaction);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            UUID userId = ids.get(random.nextInt(ids.size()));
+            long timestamp = random.nextInt(1100) - 50;
+            int fromPosition = random.nextBoolean() ? 0 : random.nextInt(all.size());
+
+            BigDecimal expected = BigDecimal.ZERO;
+            for (TransferTransaction transaction : all.subList(fromPosition, all.size())) {
+                if (transaction.getTimestamp() <= timestamp) {
+                    if (transaction.getTo().equals(userId)) {
+                        expected = expected.add(transaction.getAmount());
+                    }
+                    if (transaction.getFrom().equals(userId)) {
+                        expected = expected.subtract(transaction.getAmount());
+                    }
+                }
+            }
+
+            assertEquals(userId + " from " + fromPosition + " at " + timestamp, expected,
+                    transactionStorage.getNetFlow(userId, fromPosition, timestamp));
+        }
+        assertEquals(BigDecimal.ZERO, transactionStorage.getNetFlow(UUID.randomUUID(), 0, 1000));
+    }
+
+    private void checkPlansMatchFullScan(boolean unordered) {
+        Random random = new Random(42);
+        TransactionStorage transactionStorage = new TransactionStorage();
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(UUID.randomUUID());
+        }
+
+        List<TransferTransaction> all = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long timestamp = unordered ? random.nextInt(1000) : i / 2;
+            TransferTransaction transaction = new TransferTransaction(
+                    ids.get(random.nextInt(ids.size())), ids.get(random.nextInt(ids.size())), BigDecimal.ONE, timestamp);
+            if (transactionStorage.addTransaction(transaction) >= 0) {
+                all.add(transaction);
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Long fromTimestamp = random.nextBoolean() ? (long) random.nextInt(1000) : null;
+            Long toTimestamp = random.nextBoolean() ? (long) random.nextInt(1000) : null;
+            TransactionQuery query = new TransactionQuery(
+                    random.nextBoolean() ? ids.get(random.nextInt(ids.size())) : null,
+                    random.nextBoolean() ? ids.get(random.nextInt(ids.size())) : null,
+                    fromTimestamp, toTimestamp);
+
+            assertEquals(query + " " + transactionStorage.plan(query),
+                    all.stream().filter(query::matches).collect(Collectors.toList()),
+                    transactionStorage.getTransactions(query));
+        }
+    }
+}